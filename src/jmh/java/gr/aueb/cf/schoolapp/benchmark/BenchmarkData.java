@@ -0,0 +1,56 @@
+package gr.aueb.cf.schoolapp.benchmark;
+
+import gr.aueb.cf.schoolapp.dao.TeacherDAOImpl;
+import gr.aueb.cf.schoolapp.dto.TeacherInsertDTO;
+import gr.aueb.cf.schoolapp.mapper.Mapper;
+import gr.aueb.cf.schoolapp.model.Teacher;
+import gr.aueb.cf.schoolapp.service.util.JPAHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BenchmarkData {
+    private static final String URL = "jdbc:h2:mem:school7;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final String[] FIRSTNAMES = {"Nikos", "Maria", "Giorgos", "Eleni", "Kostas", "Anna", "Dimitris", "Sofia"};
+    private static final String[] LASTNAMES = {"Papadopoulos", "Pappa", "Georgiou", "Nikolaou", "Ioannou", "Oikonomou"};
+
+    private BenchmarkData() {
+    }
+
+    // Must run before JPAHelper is first touched, its static block reads the url
+    public static void startH2(int rows) {
+        System.setProperty("SCHOOL7_DB_URL", URL);
+        List<Teacher> teachers = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            teachers.add(newTeacher(i));
+        }
+        try {
+            JPAHelper.beginTransaction();
+            new TeacherDAOImpl().insertAll(teachers, 50);
+            JPAHelper.commitTransaction();
+        } finally {
+            JPAHelper.closeEntityManager();
+        }
+    }
+
+    public static void stopH2() {
+        JPAHelper.closeEMF();
+    }
+
+    public static List<Teacher> teachers(int rows) {
+        List<Teacher> teachers = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Teacher teacher = newTeacher(i);
+            teacher.setId((long) i + 1);
+            teachers.add(teacher);
+        }
+        return teachers;
+    }
+
+    private static Teacher newTeacher(int i) {
+        return Mapper.mapToTeacher(new TeacherInsertDTO(
+                FIRSTNAMES[i % FIRSTNAMES.length],
+                LASTNAMES[i % LASTNAMES.length],
+                String.format("%09d", i)));
+    }
+}
@@ -0,0 +1,26 @@
+package gr.aueb.cf.schoolapp.benchmark;
+
+import gr.aueb.cf.schoolapp.dao.TeacherDAOImpl;
+import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
+import gr.aueb.cf.schoolapp.mapper.Mapper;
+import gr.aueb.cf.schoolapp.model.Teacher;
+import jakarta.persistence.TypedQuery;
+
+import java.util.Map;
+
+// Opens up the protected query-building steps of AbstractDAO so they can be measured on their own
+public class BenchmarkTeacherDAO extends TeacherDAOImpl {
+    // The select getProjectionByCriteria builds for the read-only DTO
+    private static final String PROJECTION_SELECT = "SELECT new " + TeacherReadOnlyDTO.class.getName()
+            + "(e." + String.join(", e.", Mapper.TEACHER_READ_ONLY_FIELDS) + ")";
+
+    public String buildJpql(Map<String, Object> criteria) {
+        return getCachedQuery(PROJECTION_SELECT, Teacher.class, criteria, null, "");
+    }
+
+    public TypedQuery<TeacherReadOnlyDTO> buildProjectionQuery(Map<String, Object> criteria) {
+        TypedQuery<TeacherReadOnlyDTO> query = getEntityManager().createQuery(buildJpql(criteria), TeacherReadOnlyDTO.class);
+        addParametersToQuery(query, criteria);
+        return query;
+    }
+}
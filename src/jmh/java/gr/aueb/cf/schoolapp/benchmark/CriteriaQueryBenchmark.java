@@ -0,0 +1,63 @@
+package gr.aueb.cf.schoolapp.benchmark;
+
+import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
+import gr.aueb.cf.schoolapp.mapper.Mapper;
+import gr.aueb.cf.schoolapp.model.Teacher;
+import gr.aueb.cf.schoolapp.service.util.JPAHelper;
+import jakarta.persistence.TypedQuery;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CriteriaQueryBenchmark {
+    private static final int ROWS = 1_000;
+
+    private final Map<String, Object> criteria = Map.of("firstname", "Ni%", "lastname", "Pap%");
+    private BenchmarkTeacherDAO teacherDAO;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkData.startH2(ROWS);
+        teacherDAO = new BenchmarkTeacherDAO();
+        JPAHelper.beginReadOnlyTransaction();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        JPAHelper.commitTransaction();
+        JPAHelper.closeEntityManager();
+        BenchmarkData.stopH2();
+    }
+
+    // The JPQL of the criteria shape, cached after the first call
+    @Benchmark
+    public String getCachedQuery() {
+        return teacherDAO.buildJpql(criteria);
+    }
+
+    // createQuery (Hibernate's plan cache) and parameter binding, everything a request does before the database
+    @Benchmark
+    public TypedQuery<TeacherReadOnlyDTO> createProjectionQuery() {
+        return teacherDAO.buildProjectionQuery(criteria);
+    }
+
+    @Benchmark
+    public List<Teacher> getByCriteria() {
+        List<Teacher> teachers = teacherDAO.getByCriteria(Teacher.class, criteria);
+        JPAHelper.getEntityManager().clear();
+        return teachers;
+    }
+
+    @Benchmark
+    public List<TeacherReadOnlyDTO> getProjectionByCriteria() {
+        return teacherDAO.getProjectionByCriteria(TeacherReadOnlyDTO.class, Mapper.TEACHER_READ_ONLY_FIELDS, criteria);
+    }
+}
@@ -0,0 +1,33 @@
+package gr.aueb.cf.schoolapp.benchmark;
+
+import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
+import gr.aueb.cf.schoolapp.mapper.Mapper;
+import gr.aueb.cf.schoolapp.model.Teacher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int rows;
+
+    private List<Teacher> teachers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        teachers = BenchmarkData.teachers(rows);
+    }
+
+    @Benchmark
+    public List<TeacherReadOnlyDTO> mapToTeacherReadOnlyDTOs() {
+        return Mapper.mapToTeacherReadOnlyDTOs(teachers);
+    }
+}
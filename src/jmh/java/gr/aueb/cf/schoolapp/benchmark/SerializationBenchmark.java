@@ -0,0 +1,35 @@
+package gr.aueb.cf.schoolapp.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
+import gr.aueb.cf.schoolapp.mapper.Mapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int rows;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<TeacherReadOnlyDTO> teachers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        teachers = Mapper.mapToTeacherReadOnlyDTOs(BenchmarkData.teachers(rows));
+    }
+
+    @Benchmark
+    public byte[] serializeTeacherReadOnlyDTOs() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(teachers);
+    }
+}
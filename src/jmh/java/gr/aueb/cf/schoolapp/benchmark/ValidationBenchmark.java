@@ -0,0 +1,29 @@
+package gr.aueb.cf.schoolapp.benchmark;
+
+import gr.aueb.cf.schoolapp.dto.TeacherInsertDTO;
+import gr.aueb.cf.schoolapp.validator.ValidatorUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+    private final TeacherInsertDTO validDTO = new TeacherInsertDTO("Nikos", "Papadopoulos", "123456789");
+    private final TeacherInsertDTO invalidDTO = new TeacherInsertDTO("N", null, "1234");
+
+    @Benchmark
+    public List<String> validateValidDTO() {
+        return ValidatorUtil.validateDTO(validDTO);
+    }
+
+    @Benchmark
+    public List<String> validateInvalidDTO() {
+        return ValidatorUtil.validateDTO(invalidDTO);
+    }
+}
@@ -0,0 +1,174 @@
+package gr.aueb.cf.schoolapp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Open-model load: requests arrive as a Poisson process at the configured rate whether or not earlier ones have
+// answered, which is how independent users behave. Seeded teachers are read and updated, teachers inserted
+// during the run are the ones deleted, so reads never race a delete.
+public class LoadGenerator {
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final LoadTestConfig config;
+    private final HttpClient client;
+    private final URI baseUri;
+    private final List<SeededTeacher> seeded;
+    private final Random random;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    private final Map<Long, Long> versions = new ConcurrentHashMap<>();
+    private final Queue<long[]> created = new ConcurrentLinkedQueue<>();
+    private final AtomicLong nextVat = new AtomicLong(900_000_000L);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+    public record SeededTeacher(long id, String firstname, String lastname, String vat, long version) {}
+
+    private record Call(Operation operation, HttpRequest request, Long id) {}
+
+    public LoadGenerator(LoadTestConfig config, HttpClient client, URI baseUri, List<SeededTeacher> seeded) {
+        this.config = config;
+        this.client = client;
+        this.baseUri = baseUri;
+        this.seeded = seeded;
+        this.random = new Random(config.seed());
+        this.operations = config.mix().keySet().toArray(new Operation[0]);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += config.mix().get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        for (Operation operation : Operation.values()) stats.put(operation, new OperationStats());
+        seeded.forEach(teacher -> versions.put(teacher.id(), teacher.version()));
+    }
+
+    public Map<Operation, OperationStats> run() throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(config.warmupSeconds());
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(config.durationSeconds());
+        double meanGapNanos = 1e9 / config.ratePerSecond();
+
+        long intended = start;
+        while (true) {
+            intended += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+            if (intended >= end) break;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            dispatch(nextOperation(), intended, intended >= measureFrom);
+        }
+
+        long drainDeadline = System.nanoTime() + REQUEST_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        return stats;
+    }
+
+    private Operation nextOperation() {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) return operations[i];
+        }
+        return operations[operations.length - 1];
+    }
+
+    private void dispatch(Operation operation, long intendedNanos, boolean measured) {
+        Call call = buildCall(operation);
+        OperationStats operationStats = stats.get(call.operation());
+        if (inFlight.incrementAndGet() > config.maxInFlight()) {
+            inFlight.decrementAndGet();
+            if (measured) operationStats.drop();
+            return;
+        }
+        client.sendAsync(call.request(), HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            inFlight.decrementAndGet();
+            long micros = (System.nanoTime() - intendedNanos) / 1_000;
+            if (measured) operationStats.record(micros, response == null ? 0 : response.statusCode());
+            if (response != null) afterResponse(call, response);
+        });
+    }
+
+    private Call buildCall(Operation operation) {
+        SeededTeacher teacher = seeded.get(random.nextInt(seeded.size()));
+        return switch (operation) {
+            case GET_BY_ID -> new Call(operation, request("teachers/" + teacher.id()).GET().build(), teacher.id());
+            case LIST -> new Call(operation, request("teachers/paginated?lastname=" + teacher.lastname().substring(0, 3) + "%25&page=0&size=20")
+                    .GET().build(), null);
+            case UPDATE -> {
+                String body = json(Map.of("id", teacher.id(), "firstname", teacher.firstname() + random.nextInt(100),
+                        "lastname", teacher.lastname(), "vat", teacher.vat(), "version", versions.get(teacher.id())));
+                yield new Call(operation, request("teachers/" + teacher.id()).PUT(HttpRequest.BodyPublishers.ofString(body)).build(), teacher.id());
+            }
+            case DELETE -> {
+                long[] target = created.poll();
+                // Nothing inserted yet to delete, insert instead so the arrival still happens
+                if (target == null) yield buildCall(Operation.INSERT);
+                yield new Call(operation, request("teachers/" + target[0] + "?version=" + target[1]).DELETE().build(), target[0]);
+            }
+            case INSERT -> {
+                String body = json(Map.of("firstname", teacher.firstname(), "lastname", teacher.lastname(),
+                        "vat", String.format("%09d", nextVat.getAndIncrement())));
+                yield new Call(operation, request("teachers").POST(HttpRequest.BodyPublishers.ofString(body)).build(), null);
+            }
+        };
+    }
+
+    private void afterResponse(Call call, HttpResponse<String> response) {
+        int status = response.statusCode();
+        if (call.operation() == Operation.INSERT && status == 201) {
+            JsonNode teacher = readJson(response.body());
+            created.add(new long[] {teacher.get("id").asLong(), teacher.get("version").asLong()});
+        } else if (call.operation() == Operation.UPDATE && status == 200) {
+            versions.put(call.id(), readJson(response.body()).get("version").asLong());
+        } else if (call.operation() == Operation.UPDATE && status == 409) {
+            // Another update won the race: pick up the current version, unmeasured
+            client.sendAsync(request("teachers/" + call.id()).GET().build(), HttpResponse.BodyHandlers.ofString())
+                    .thenAccept(current -> {
+                        if (current.statusCode() == 200) versions.put(call.id(), readJson(current.body()).get("version").asLong());
+                    });
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json");
+    }
+
+    private static String json(Object value) {
+        try {
+            return JSON_MAPPER.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static JsonNode readJson(String body) {
+        try {
+            return JSON_MAPPER.readTree(body);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package gr.aueb.cf.schoolapp.loadtest;
+
+import gr.aueb.cf.schoolapp.SchoolServer;
+import gr.aueb.cf.schoolapp.dao.TeacherDAOImpl;
+import gr.aueb.cf.schoolapp.dto.TeacherInsertDTO;
+import gr.aueb.cf.schoolapp.mapper.Mapper;
+import gr.aueb.cf.schoolapp.model.Teacher;
+import gr.aueb.cf.schoolapp.service.util.JPAHelper;
+import org.glassfish.grizzly.http.server.HttpServer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+// End to end: seeds an in-memory H2, starts the embedded server, drives the open-model mix over HTTP and exits
+// non-zero when the result regresses against the baseline, so CI can run it with mvn -Ploadtest test
+public class LoadTest {
+    private static final String URL = "jdbc:h2:mem:school7load;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final String[] FIRSTNAMES = {"Nikos", "Maria", "Giorgos", "Eleni", "Kostas", "Anna", "Dimitris", "Sofia"};
+    private static final String[] LASTNAMES = {"Papadopoulos", "Pappa", "Georgiou", "Nikolaou", "Ioannou", "Oikonomou"};
+    private static final Duration READY_TIMEOUT = Duration.ofMinutes(2);
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        // Must be set before JPAHelper is first touched, its static block reads the url
+        System.setProperty("SCHOOL7_DB_URL", URL);
+        System.setProperty("SCHOOL7_HTTP_PORT", Integer.toString(config.port()));
+        // The generator is a single client, so its rate limit is raised well above the offered rate; what is measured
+        // is the server behind the adaptive concurrency limits. Any of them can still be set with -DSCHOOL7_ADMISSION_...
+        setDefault("SCHOOL7_ADMISSION_CLIENT_RATE", Double.toString(config.ratePerSecond() * 2));
+        setDefault("SCHOOL7_ADMISSION_CLIENT_BURST", Integer.toString(config.maxInFlight()));
+
+        List<LoadGenerator.SeededTeacher> seeded = seed(config.rows());
+        HttpServer server = SchoolServer.start();
+        int exitCode;
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build();
+            URI baseUri = URI.create("http://localhost:" + config.port() + "/api/");
+            awaitReady(client, baseUri);
+
+            LoadTestReport report = new LoadTestReport(config, new LoadGenerator(config, client, baseUri, seeded).run());
+            report.print(System.out);
+            report.write();
+            System.out.println("Histograms and result.json written to " + config.outputDirectory().toAbsolutePath());
+
+            if (config.updateBaseline()) {
+                report.writeBaseline();
+                System.out.println("Baseline recorded in " + config.baseline().toAbsolutePath());
+            } else if (!Files.exists(config.baseline())) {
+                System.out.println("No baseline at " + config.baseline() + ", record one with -Dloadtest.updateBaseline=true");
+            }
+
+            List<String> regressions = report.regressions();
+            regressions.forEach(regression -> System.out.println("REGRESSION: " + regression));
+            exitCode = regressions.isEmpty() ? 0 : 1;
+        } finally {
+            // Container shutdown closes the EntityManagerFactories
+            server.shutdownNow();
+        }
+        System.exit(exitCode);
+    }
+
+    private static List<LoadGenerator.SeededTeacher> seed(int rows) {
+        List<Teacher> teachers = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            teachers.add(Mapper.mapToTeacher(new TeacherInsertDTO(
+                    FIRSTNAMES[i % FIRSTNAMES.length],
+                    LASTNAMES[i % LASTNAMES.length],
+                    String.format("%09d", i))));
+        }
+        try {
+            JPAHelper.beginTransaction();
+            new TeacherDAOImpl().insertAll(teachers, 50);
+            JPAHelper.commitTransaction();
+        } finally {
+            JPAHelper.closeEntityManager();
+        }
+        List<LoadGenerator.SeededTeacher> seeded = new ArrayList<>(rows);
+        for (Teacher teacher : teachers) {
+            seeded.add(new LoadGenerator.SeededTeacher(teacher.getId(), teacher.getFirstname(), teacher.getLastname(),
+                    teacher.getVat(), teacher.getVersion() == null ? 0 : teacher.getVersion()));
+        }
+        return seeded;
+    }
+
+    // Warm-up runs in the background after start, measuring before readiness would time the JIT and the pool fill
+    private static void awaitReady(HttpClient client, URI baseUri) throws InterruptedException {
+        HttpRequest ready = HttpRequest.newBuilder(baseUri.resolve("health/ready")).GET().build();
+        long deadline = System.nanoTime() + READY_TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            try {
+                if (client.send(ready, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) return;
+            } catch (java.io.IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(500);
+        }
+        throw new IllegalStateException("Server not ready after " + READY_TIMEOUT);
+    }
+
+    private static void setDefault(String name, String value) {
+        if (System.getProperty(name) == null) System.setProperty(name, value);
+    }
+}
@@ -0,0 +1,52 @@
+package gr.aueb.cf.schoolapp.loadtest;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Everything comes from system properties, which the loadtest profile fills from its loadtest.* Maven properties
+public record LoadTestConfig(
+        int port,
+        int rows,
+        double ratePerSecond,
+        int warmupSeconds,
+        int durationSeconds,
+        int maxInFlight,
+        Map<Operation, Integer> mix,
+        Path baseline,
+        boolean updateBaseline,
+        double tolerance,
+        double maxErrorRate,
+        Path outputDirectory,
+        long seed
+) {
+
+    public static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig(
+                Integer.getInteger("loadtest.port", 18080),
+                Integer.getInteger("loadtest.rows", 10_000),
+                Double.parseDouble(System.getProperty("loadtest.rate", "200")),
+                Integer.getInteger("loadtest.warmup", 10),
+                Integer.getInteger("loadtest.duration", 60),
+                Integer.getInteger("loadtest.maxInFlight", 5_000),
+                parseMix(System.getProperty("loadtest.mix", "getById=50,list=20,insert=10,update=15,delete=5")),
+                Path.of(System.getProperty("loadtest.baseline", "src/loadtest/resources/loadtest-baseline.json")),
+                Boolean.getBoolean("loadtest.updateBaseline"),
+                Double.parseDouble(System.getProperty("loadtest.tolerance", "0.2")),
+                Double.parseDouble(System.getProperty("loadtest.maxErrorRate", "0.01")),
+                Path.of(System.getProperty("loadtest.output", "target/loadtest")),
+                Long.getLong("loadtest.seed", 7L));
+    }
+
+    // "getById=50,list=20,..." as relative weights
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) weights.put(Operation.fromKey(parts[0].trim()), weight);
+        }
+        if (weights.isEmpty()) throw new IllegalArgumentException("Empty operation mix " + mix);
+        return weights;
+    }
+}
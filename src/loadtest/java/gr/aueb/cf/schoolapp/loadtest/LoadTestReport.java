@@ -0,0 +1,110 @@
+package gr.aueb.cf.schoolapp.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Per-operation throughput and latency percentiles, the HdrHistogram .hgrm distributions for plotting, and the
+// comparison against a recorded baseline that decides whether the run is a regression
+public class LoadTestReport {
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final double MICROS_PER_MILLI = 1_000.0;
+
+    private final LoadTestConfig config;
+    private final Map<Operation, OperationStats> stats;
+    private final Map<String, OperationResult> results = new LinkedHashMap<>();
+
+    public record OperationResult(long count, double throughput, double p50Ms, double p95Ms, double p99Ms,
+                                  double p999Ms, double maxMs, long errors, long conflicts, long rejected,
+                                  long dropped, double errorRate) {}
+
+    public LoadTestReport(LoadTestConfig config, Map<Operation, OperationStats> stats) {
+        this.config = config;
+        this.stats = stats;
+        stats.forEach((operation, operationStats) -> {
+            Histogram latencies = operationStats.latencies();
+            long count = latencies.getTotalCount();
+            if (count == 0 && operationStats.dropped() == 0) return;
+            long failed = operationStats.errors() + operationStats.rejected() + operationStats.dropped();
+            results.put(operation.key(), new OperationResult(
+                    count,
+                    (double) count / config.durationSeconds(),
+                    millis(latencies.getValueAtPercentile(50)),
+                    millis(latencies.getValueAtPercentile(95)),
+                    millis(latencies.getValueAtPercentile(99)),
+                    millis(latencies.getValueAtPercentile(99.9)),
+                    millis(latencies.getMaxValue()),
+                    operationStats.errors(),
+                    operationStats.conflicts(),
+                    operationStats.rejected(),
+                    operationStats.dropped(),
+                    (double) failed / Math.max(1, count + operationStats.dropped())));
+        });
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%nOpen-model load: %.0f req/s for %d s after %d s warm-up%n",
+                config.ratePerSecond(), config.durationSeconds(), config.warmupSeconds());
+        out.printf("%-10s %9s %9s %9s %9s %9s %9s %9s %8s %8s%n",
+                "operation", "count", "req/s", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms", "max ms", "errors", "conflicts");
+        results.forEach((operation, result) -> out.printf("%-10s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %7.2f%% %8d%n",
+                operation, result.count(), result.throughput(), result.p50Ms(), result.p95Ms(), result.p99Ms(),
+                result.p999Ms(), result.maxMs(), result.errorRate() * 100, result.conflicts()));
+    }
+
+    public void write() throws IOException {
+        Files.createDirectories(config.outputDirectory());
+        for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+            if (entry.getValue().latencies().getTotalCount() == 0) continue;
+            Path file = config.outputDirectory().resolve(entry.getKey().key() + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+                entry.getValue().latencies().outputPercentileDistribution(out, MICROS_PER_MILLI);
+            }
+        }
+        JSON_MAPPER.writerWithDefaultPrettyPrinter().writeValue(config.outputDirectory().resolve("result.json").toFile(), results);
+    }
+
+    public void writeBaseline() throws IOException {
+        if (config.baseline().getParent() != null) Files.createDirectories(config.baseline().getParent());
+        JSON_MAPPER.writerWithDefaultPrettyPrinter().writeValue(config.baseline().toFile(), results);
+    }
+
+    // Error rate is checked on every run; latency and throughput only against a baseline recorded on comparable hardware
+    public List<String> regressions() throws IOException {
+        List<String> regressions = new ArrayList<>();
+        results.forEach((operation, result) -> {
+            if (result.errorRate() > config.maxErrorRate()) {
+                regressions.add(String.format("%s error rate %.2f%% exceeds %.2f%%",
+                        operation, result.errorRate() * 100, config.maxErrorRate() * 100));
+            }
+        });
+        if (!Files.exists(config.baseline())) return regressions;
+
+        Map<String, OperationResult> baseline = JSON_MAPPER.readValue(config.baseline().toFile(), new TypeReference<>() {});
+        baseline.forEach((operation, expected) -> {
+            OperationResult actual = results.get(operation);
+            if (actual == null) return;
+            if (actual.p99Ms() > expected.p99Ms() * (1 + config.tolerance())) {
+                regressions.add(String.format("%s p99 %.2f ms is above baseline %.2f ms", operation, actual.p99Ms(), expected.p99Ms()));
+            }
+            if (actual.throughput() < expected.throughput() * (1 - config.tolerance())) {
+                regressions.add(String.format("%s throughput %.1f req/s is below baseline %.1f req/s",
+                        operation, actual.throughput(), expected.throughput()));
+            }
+        });
+        return regressions;
+    }
+
+    private static double millis(long micros) {
+        return micros / MICROS_PER_MILLI;
+    }
+}
@@ -0,0 +1,26 @@
+package gr.aueb.cf.schoolapp.loadtest;
+
+public enum Operation {
+    GET_BY_ID("getById"),
+    LIST("list"),
+    INSERT("insert"),
+    UPDATE("update"),
+    DELETE("delete");
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public static Operation fromKey(String key) {
+        for (Operation operation : values()) {
+            if (operation.key.equals(key)) return operation;
+        }
+        throw new IllegalArgumentException("Unknown operation " + key);
+    }
+}
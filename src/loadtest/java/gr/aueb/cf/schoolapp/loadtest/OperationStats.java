@@ -0,0 +1,54 @@
+package gr.aueb.cf.schoolapp.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latencies in microseconds, measured from the intended send time so a stalled server is not hidden (coordinated omission)
+public class OperationStats {
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Histogram latencies = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    void record(long micros, int status) {
+        latencies.recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+        if (status == 409 || status == 412) {
+            conflicts.increment();
+        } else if (status == 503) {
+            rejected.increment();
+        } else if (status >= 400 || status == 0) {
+            errors.increment();
+        }
+    }
+
+    // The client already had maxInFlight requests outstanding, the request was never sent
+    void drop() {
+        dropped.increment();
+    }
+
+    Histogram latencies() {
+        return latencies;
+    }
+
+    long errors() {
+        return errors.sum();
+    }
+
+    long conflicts() {
+        return conflicts.sum();
+    }
+
+    long rejected() {
+        return rejected.sum();
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,108 @@
+package gr.aueb.cf.schoolapp;
+
+import gr.aueb.cf.schoolapp.core.admission.AdmissionControlFilter;
+import org.glassfish.grizzly.http.KeepAlive;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpContainer;
+import org.glassfish.jersey.server.ContainerFactory;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Runs the application on an embedded Grizzly server instead of a servlet container: mvn compile exec:java
+// Grizzly accepts connections on its selector threads, so SCHOOL7_HTTP_SELECTORS covers the acceptors as well.
+// SCHOOL7_HTTP_VIRTUAL_WORKERS=true serves every request on its own virtual thread instead of the worker pool.
+public class SchoolServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchoolServer.class);
+    private static final String CONTEXT_PATH = "/api";
+
+    private SchoolServer() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        HttpServer server = start();
+        Runtime.getRuntime().addShutdownHook(Thread.ofPlatform().name("http-shutdown").unstarted(() -> {
+            try {
+                server.shutdown(Long.parseLong(setting("SCHOOL7_HTTP_SHUTDOWN_GRACE_SECONDS", "10")), TimeUnit.SECONDS).get();
+            } catch (Exception e) {
+                server.shutdownNow();
+            }
+        }));
+        Thread.currentThread().join();
+    }
+
+    public static HttpServer start() throws IOException {
+        long start = System.nanoTime();
+        String host = setting("SCHOOL7_HTTP_HOST", "0.0.0.0");
+        int port = Integer.parseInt(setting("SCHOOL7_HTTP_PORT", "8080"));
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        NetworkListener listener = new NetworkListener("school7", host, port);
+        TCPNIOTransport transport = listener.getTransport();
+        transport.setSelectorRunnersCount(Integer.parseInt(setting("SCHOOL7_HTTP_SELECTORS", Integer.toString(processors))));
+        boolean virtualWorkers = Boolean.parseBoolean(setting("SCHOOL7_HTTP_VIRTUAL_WORKERS", "false"));
+        if (virtualWorkers) {
+            transport.setWorkerThreadPool(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-worker-", 0).factory()));
+        } else {
+            int workers = Integer.parseInt(setting("SCHOOL7_HTTP_WORKERS", Integer.toString(processors * 2)));
+            transport.setWorkerThreadPoolConfig(ThreadPoolConfig.defaultConfig().copy()
+                    .setPoolName("http-worker").setCorePoolSize(workers).setMaxPoolSize(workers));
+        }
+        KeepAlive keepAlive = listener.getKeepAlive();
+        keepAlive.setIdleTimeoutInSeconds(Integer.parseInt(setting("SCHOOL7_HTTP_KEEPALIVE_IDLE_SECONDS", "30")));
+        keepAlive.setMaxRequestsCount(Integer.parseInt(setting("SCHOOL7_HTTP_KEEPALIVE_MAX_REQUESTS", "-1")));
+
+        // Same resources and providers the servlet container finds by scanning; @ApplicationPath is applied as the context path
+        ResourceConfig resourceConfig = new ResourceConfig().packages(true, SchoolApplication.class.getPackageName());
+        GrizzlyHttpContainer container = ContainerFactory.createContainer(GrizzlyHttpContainer.class, resourceConfig);
+
+        HttpServer server = new HttpServer();
+        server.addListener(listener);
+        server.getServerConfiguration().addHttpHandler(new RemoteAddressHandler(container), CONTEXT_PATH);
+        server.start();
+        LOGGER.info("Listening on http://{}:{}{} ({} workers) after {} ms", host, port, CONTEXT_PATH,
+                virtualWorkers ? "virtual" : "pooled", (System.nanoTime() - start) / 1_000_000);
+        return server;
+    }
+
+    // System property first, so a launcher in the same JVM (load tests) can configure the server
+    private static String setting(String name, String defaultValue) {
+        String value = System.getProperty(name, System.getenv(name));
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+    // Grizzly request attributes become Jersey request properties, which is where admission control reads the peer address
+    private static class RemoteAddressHandler extends HttpHandler {
+        private final GrizzlyHttpContainer container;
+
+        private RemoteAddressHandler(GrizzlyHttpContainer container) {
+            this.container = container;
+        }
+
+        @Override
+        public void service(Request request, Response response) throws Exception {
+            request.setAttribute(AdmissionControlFilter.REMOTE_ADDRESS_PROPERTY, request.getRemoteAddr());
+            container.service(request, response);
+        }
+
+        @Override
+        public void start() {
+            container.start();
+        }
+
+        @Override
+        public void destroy() {
+            container.destroy();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package gr.aueb.cf.schoolapp.controller;
+
+import gr.aueb.cf.schoolapp.core.diagnostics.QueryDiagnostics;
+import gr.aueb.cf.schoolapp.dto.QueryDiagnosticsDTO;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+@ApplicationScoped
+@Path("/diagnostics")
+public class DiagnosticsRestController {
+
+    @GET
+    @Path("/queries")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getQueryDiagnostics() {
+        QueryDiagnosticsDTO diagnostics = QueryDiagnostics.summary();
+        return Response.status(Response.Status.OK).entity(diagnostics).build();
+    }
+}
@@ -0,0 +1,32 @@
+package gr.aueb.cf.schoolapp.controller;
+
+import gr.aueb.cf.schoolapp.core.lifecycle.Readiness;
+import gr.aueb.cf.schoolapp.dto.ResponseMessageDTO;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+@ApplicationScoped
+@Path("/health")
+public class HealthRestController {
+
+    // The process is up and serving HTTP
+    @GET
+    @Path("/live")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response live() {
+        return Response.status(Response.Status.OK).entity(new ResponseMessageDTO("Live", "UP")).build();
+    }
+
+    // Only once the startup warm-up is done, with the time every boot phase took
+    @GET
+    @Path("/ready")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response ready() {
+        return Response.status(Readiness.isReady() ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE)
+                .entity(Readiness.report()).build();
+    }
+}
@@ -0,0 +1,66 @@
+package gr.aueb.cf.schoolapp.controller;
+
+import gr.aueb.cf.schoolapp.core.exceptions.AppServerException;
+import gr.aueb.cf.schoolapp.core.exceptions.EntityInvalidArgumentException;
+import gr.aueb.cf.schoolapp.core.exceptions.EntityNotFoundException;
+import gr.aueb.cf.schoolapp.dto.ImportFormat;
+import gr.aueb.cf.schoolapp.dto.ImportJobDTO;
+import gr.aueb.cf.schoolapp.service.ITeacherImportService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.UriInfo;
+import lombok.RequiredArgsConstructor;
+
+import java.io.InputStream;
+
+@ApplicationScoped
+@RequiredArgsConstructor(onConstructor_ = @__(@Inject))
+@Path("/imports")
+public class ImportsRestController {
+    private static final int MAX_BATCH_SIZE = 5000;
+    private static final String TEXT_CSV = "text/csv";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private final ITeacherImportService importService;
+
+    @POST
+    @Path("")
+    @Consumes(TEXT_CSV)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response importCsv(InputStream content, @QueryParam("batchSize") @DefaultValue("500") Integer batchSize,
+                              @Context UriInfo uriInfo) throws EntityInvalidArgumentException, AppServerException {
+        return submit(content, ImportFormat.CSV, batchSize, uriInfo);
+    }
+
+    @POST
+    @Path("")
+    @Consumes(APPLICATION_NDJSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response importNdjson(InputStream content, @QueryParam("batchSize") @DefaultValue("500") Integer batchSize,
+                                 @Context UriInfo uriInfo) throws EntityInvalidArgumentException, AppServerException {
+        return submit(content, ImportFormat.NDJSON, batchSize, uriInfo);
+    }
+
+    @GET
+    @Path("/{jobId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getImportJob(@PathParam("jobId") String jobId) throws EntityNotFoundException {
+        ImportJobDTO job = importService.getImportJob(jobId);
+        return Response.status(Response.Status.OK).entity(job).build();
+    }
+
+    private Response submit(InputStream content, ImportFormat format, Integer batchSize, UriInfo uriInfo)
+            throws EntityInvalidArgumentException, AppServerException {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            throw new EntityInvalidArgumentException("ImportJob", "Batch size must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        ImportJobDTO job = importService.submitImport(content, format, batchSize);
+        return Response.accepted(job)
+                .location(uriInfo.getAbsolutePathBuilder().path(job.id()).build())
+                .build();
+    }
+}
@@ -0,0 +1,21 @@
+package gr.aueb.cf.schoolapp.controller;
+
+import gr.aueb.cf.schoolapp.core.metrics.MetricsRegistry;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.Response;
+
+@ApplicationScoped
+@Path("/metrics")
+public class MetricsRestController {
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    @GET
+    @Path("")
+    @Produces(PROMETHEUS_TEXT)
+    public Response getMetrics() {
+        return Response.status(Response.Status.OK).entity(MetricsRegistry.scrape()).build();
+    }
+}
@@ -1,26 +1,54 @@
 package gr.aueb.cf.schoolapp.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gr.aueb.cf.schoolapp.core.exceptions.AppServerException;
 import gr.aueb.cf.schoolapp.core.exceptions.EntityAlreadyExistsException;
 import gr.aueb.cf.schoolapp.core.exceptions.EntityInvalidArgumentException;
 import gr.aueb.cf.schoolapp.core.exceptions.EntityNotFoundException;
+import gr.aueb.cf.schoolapp.core.exceptions.EntityOutdatedException;
+import gr.aueb.cf.schoolapp.core.exceptions.EntityPreconditionFailedException;
+import gr.aueb.cf.schoolapp.dto.CacheStatsDTO;
+import gr.aueb.cf.schoolapp.dto.CountDTO;
+import gr.aueb.cf.schoolapp.dto.PaginatedResult;
+import gr.aueb.cf.schoolapp.dto.ResourceVersionDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherBatchResultDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherChangeDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherChangesDTO;
 import gr.aueb.cf.schoolapp.dto.TeacherFiltersDTO;
 import gr.aueb.cf.schoolapp.dto.TeacherInsertDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherPatchDTO;
 import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
 import gr.aueb.cf.schoolapp.dto.TeacherUpdateDTO;
 import gr.aueb.cf.schoolapp.mapper.Mapper;
 import gr.aueb.cf.schoolapp.service.ITeacherService;
+import gr.aueb.cf.schoolapp.service.TeacherChangeBroadcaster;
 import gr.aueb.cf.schoolapp.validator.ValidatorUtil;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 import lombok.RequiredArgsConstructor;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Consumer;
 
 
 
@@ -28,14 +56,29 @@ import java.util.Map;
 @RequiredArgsConstructor(onConstructor_ = @__(@Inject))
 @Path("/teachers")
 public class TeachersRestController {
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_BATCH_SIZE = 5000;
+    private static final int MAX_CHANGES_LIMIT = 1000;
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
     private final ITeacherService teacherService;
 
     @GET
     @Path("/{teacherId}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getTeacher(@PathParam("teacherId") Long id) throws EntityNotFoundException {
+    public Response getTeacher(@PathParam("teacherId") Long id, @Context Request request) throws EntityNotFoundException {
+        // The validators come from the row actually served (possibly cached), so they always describe this body
+        // and a cache hit needs no query at all
         TeacherReadOnlyDTO readOnlyDTO = teacherService.getTeacherById(id);
-        return Response.status(Response.Status.OK).entity(readOnlyDTO).build();
+        EntityTag etag = toEntityTag(readOnlyDTO);
+        Date lastModified = toDate(readOnlyDTO.updatedAt());
+        Response.ResponseBuilder notModified = evaluatePreconditions(request, etag, lastModified);
+        if (notModified != null) {
+            return notModified.tag(etag).build();
+        }
+        return Response.status(Response.Status.OK).entity(readOnlyDTO).tag(etag).lastModified(lastModified).build();
     }
 
 
@@ -57,26 +100,73 @@ public class TeachersRestController {
                                 .build();
     }
 
+    @POST
+    @Path("/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response addTeachers(List<TeacherInsertDTO> dtos) throws EntityInvalidArgumentException, AppServerException {
+        if (dtos == null || dtos.isEmpty() || dtos.size() > MAX_BATCH_SIZE) {
+            throw new EntityInvalidArgumentException("Teacher", "A batch must contain between 1 and " + MAX_BATCH_SIZE + " teachers");
+        }
+        List<TeacherBatchResultDTO> results = teacherService.insertTeachers(dtos);
+        return Response.status(Response.Status.OK).entity(results).build();
+    }
+
     @PUT
     @Path("/{teacherId}")
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response updateTeacher(@PathParam("teacherId") Long id, TeacherUpdateDTO dto) throws EntityInvalidArgumentException, EntityNotFoundException {
+    public Response updateTeacher(@PathParam("teacherId") Long id, TeacherUpdateDTO dto, @Context HttpHeaders headers)
+            throws EntityInvalidArgumentException, EntityNotFoundException, EntityOutdatedException, EntityAlreadyExistsException {
         List<String> errors = ValidatorUtil.validateDTO(dto);
         if (!errors.isEmpty()) {
             throw new EntityInvalidArgumentException("Teacher", String.join(",", errors));
         }
-        TeacherReadOnlyDTO readOnlyDTO = teacherService.updateTeacher(dto);
-        return Response.status(Response.Status.OK).entity(readOnlyDTO).build();
+        if (!id.equals(dto.id())) {
+            throw new EntityInvalidArgumentException("Teacher", "Teacher id " + dto.id() + " does not match the path id " + id);
+        }
+        Long version = requiredVersion(id, headers, dto.version());
+        TeacherReadOnlyDTO readOnlyDTO;
+        try {
+            readOnlyDTO = teacherService.updateTeacher(new TeacherUpdateDTO(dto.id(), dto.firstname(), dto.lastname(), dto.vat(), version));
+        } catch (EntityOutdatedException e) {
+            throw ifMatchFailed(headers, e);
+        }
+        return Response.status(Response.Status.OK).entity(readOnlyDTO).tag(toEntityTag(readOnlyDTO)).build();
     }
 
+    @PATCH
+    @Path("/{teacherId}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response patchTeacher(@PathParam("teacherId") Long id, TeacherPatchDTO dto, @Context HttpHeaders headers)
+            throws EntityInvalidArgumentException, EntityNotFoundException, EntityOutdatedException, EntityAlreadyExistsException {
+        List<String> errors = ValidatorUtil.validateDTO(dto);
+        if (!errors.isEmpty()) {
+            throw new EntityInvalidArgumentException("Teacher", String.join(",", errors));
+        }
+        Long version = requiredVersion(id, headers, dto.version());
+        TeacherReadOnlyDTO readOnlyDTO;
+        try {
+            readOnlyDTO = teacherService.patchTeacher(id, new TeacherPatchDTO(dto.firstname(), dto.lastname(), dto.vat(), version));
+        } catch (EntityOutdatedException e) {
+            throw ifMatchFailed(headers, e);
+        }
+        return Response.status(Response.Status.OK).entity(readOnlyDTO).tag(toEntityTag(readOnlyDTO)).build();
+    }
 
+    // Without a version the delete is unconditional, as before
     @DELETE
     @Path("/{teacherId}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response deleteTeacher(@PathParam("teacherId") Long id) throws EntityNotFoundException {
-        TeacherReadOnlyDTO readOnlyDTO = teacherService.getTeacherById(id);
-        teacherService.deleteTeacher(id);
+    public Response deleteTeacher(@PathParam("teacherId") Long id, @QueryParam("version") Long version,
+                                  @Context HttpHeaders headers) throws EntityNotFoundException, EntityOutdatedException {
+        TeacherReadOnlyDTO readOnlyDTO;
+        try {
+            readOnlyDTO = teacherService.deleteTeacher(id, requiredVersion(id, headers, version));
+        } catch (EntityOutdatedException e) {
+            throw ifMatchFailed(headers, e);
+        }
         return Response.status(Response.Status.OK).entity(readOnlyDTO).build();
     }
 
@@ -85,10 +175,238 @@ public class TeachersRestController {
     @Produces(MediaType.APPLICATION_JSON)
     public Response getFilteredTeachers(@QueryParam("firstname") String firstname,
                                         @QueryParam("lastname") String lastname,
-                                        @QueryParam("vat") String vat) {
+                                        @QueryParam("vat") String vat,
+                                        @Context Request request) {
         TeacherFiltersDTO filtersDTO = new TeacherFiltersDTO(firstname, lastname, vat);
         Map<String, Object> criteria = Mapper.mapToCriteria(filtersDTO);
+        // Collection validator: any insert, update or delete under the filter moves either the count or max(updatedAt)
+        ResourceVersionDTO version = teacherService.getTeachersVersion(criteria);
+        EntityTag etag = toEntityTag(version);
+        Date lastModified = toDate(version.lastModified());
+        Response.ResponseBuilder notModified = evaluatePreconditions(request, etag, lastModified);
+        if (notModified != null) {
+            return notModified.tag(etag).build();
+        }
         List<TeacherReadOnlyDTO> teacherReadOnlyDTOS = teacherService.getTeachersByCriteria(criteria);
-        return Response.status(Response.Status.OK).entity(teacherReadOnlyDTOS).build();
+        return Response.status(Response.Status.OK).entity(teacherReadOnlyDTOS).tag(etag).lastModified(lastModified).build();
+    }
+
+    @GET
+    @Path("/paginated")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getTeachersPaginated(@QueryParam("firstname") String firstname,
+                                         @QueryParam("lastname") String lastname,
+                                         @QueryParam("vat") String vat,
+                                         @QueryParam("page") @DefaultValue("0") Integer page,
+                                         @QueryParam("size") @DefaultValue("20") Integer size) throws EntityInvalidArgumentException {
+        if (page < 0) {
+            throw new EntityInvalidArgumentException("Teacher", "Page must not be negative");
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new EntityInvalidArgumentException("Teacher", "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        Map<String, Object> criteria = Mapper.mapToCriteria(new TeacherFiltersDTO(firstname, lastname, vat));
+        PaginatedResult<TeacherReadOnlyDTO> result = teacherService.getTeachersPage(criteria, page, size);
+        return Response.status(Response.Status.OK).entity(result).build();
+    }
+
+    @GET
+    @Path("/cursor")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getTeachersByCursor(@QueryParam("firstname") String firstname,
+                                        @QueryParam("lastname") String lastname,
+                                        @QueryParam("vat") String vat,
+                                        @QueryParam("cursor") String cursor,
+                                        @QueryParam("size") @DefaultValue("20") Integer size) throws EntityInvalidArgumentException {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new EntityInvalidArgumentException("Teacher", "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        TeacherFiltersDTO filtersDTO = new TeacherFiltersDTO(firstname, lastname, vat);
+        Map<String, Object> criteria = Mapper.mapToCriteria(filtersDTO);
+        PaginatedResult<TeacherReadOnlyDTO> result = teacherService.getTeachersByCriteriaKeyset(criteria, cursor, size);
+        return Response.status(Response.Status.OK).entity(result).build();
+    }
+
+    @GET
+    @Path("/count")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response countTeachers(@QueryParam("firstname") String firstname,
+                                  @QueryParam("lastname") String lastname,
+                                  @QueryParam("vat") String vat,
+                                  @QueryParam("approximate") @DefaultValue("false") boolean approximate) {
+        Map<String, Object> criteria = Mapper.mapToCriteria(new TeacherFiltersDTO(firstname, lastname, vat));
+        CountDTO count = teacherService.getTeachersCount(criteria, approximate);
+        return Response.status(Response.Status.OK).entity(count).build();
+    }
+
+    @GET
+    @Path("/search")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response searchTeachers(@QueryParam("q") String query,
+                                   @QueryParam("limit") @DefaultValue("10") Integer limit) throws EntityInvalidArgumentException {
+        if (query == null || query.isBlank()) {
+            throw new EntityInvalidArgumentException("Teacher", "Search query can not be empty");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new EntityInvalidArgumentException("Teacher", "Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        List<TeacherReadOnlyDTO> teachers = teacherService.searchTeachers(query, limit);
+        return Response.status(Response.Status.OK).entity(teachers).build();
+    }
+
+    @GET
+    @Path("/export")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response exportTeachersAsJson(@QueryParam("firstname") String firstname,
+                                         @QueryParam("lastname") String lastname,
+                                         @QueryParam("vat") String vat) {
+        Map<String, Object> criteria = Mapper.mapToCriteria(new TeacherFiltersDTO(firstname, lastname, vat));
+        StreamingOutput stream = output -> {
+            try (JsonGenerator generator = JSON_MAPPER.createGenerator(output)) {
+                generator.writeStartArray();
+                export(criteria, generator, false);
+                generator.writeEndArray();
+            }
+        };
+        return Response.status(Response.Status.OK).entity(stream).build();
+    }
+
+    @GET
+    @Path("/export")
+    @Produces(APPLICATION_NDJSON)
+    public Response exportTeachersAsNdjson(@QueryParam("firstname") String firstname,
+                                           @QueryParam("lastname") String lastname,
+                                           @QueryParam("vat") String vat) {
+        Map<String, Object> criteria = Mapper.mapToCriteria(new TeacherFiltersDTO(firstname, lastname, vat));
+        StreamingOutput stream = output -> {
+            try (JsonGenerator generator = JSON_MAPPER.createGenerator(output)) {
+                generator.setRootValueSeparator(null);
+                export(criteria, generator, true);
+            }
+        };
+        return Response.status(Response.Status.OK).entity(stream).build();
+    }
+
+    private void export(Map<String, Object> criteria, JsonGenerator generator, boolean newlineDelimited) throws IOException {
+        Consumer<TeacherReadOnlyDTO> writer = dto -> {
+            try {
+                generator.writeObject(dto);
+                if (newlineDelimited) generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        try {
+            teacherService.exportTeachers(criteria, writer);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @GET
+    @Path("/changes")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getTeacherChanges(@QueryParam("since") String since,
+                                      @QueryParam("limit") @DefaultValue("100") Integer limit) throws EntityInvalidArgumentException {
+        if (limit < 1 || limit > MAX_CHANGES_LIMIT) {
+            throw new EntityInvalidArgumentException("Teacher", "Limit must be between 1 and " + MAX_CHANGES_LIMIT);
+        }
+        TeacherChangesDTO changes = teacherService.getTeacherChanges(since, limit);
+        return Response.status(Response.Status.OK).entity(changes).build();
+    }
+
+    // Live changes; event ids are change tokens. A client that falls too far behind gets an "overflow" event
+    // carrying the token to resume from with GET /teachers/changes?since=
+    @GET
+    @Path("/changes/stream")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamTeacherChanges(@Context SseEventSink eventSink, @Context Sse sse) {
+        teacherService.subscribeToTeacherChanges(new TeacherChangeBroadcaster.ChangeListener() {
+            @Override
+            public CompletionStage<?> onChange(TeacherChangeDTO change) throws IOException {
+                if (eventSink.isClosed()) throw new IOException("Change stream closed by the client");
+                return eventSink.send(sse.newEventBuilder()
+                        .id(change.token())
+                        .name(change.type().name().toLowerCase())
+                        .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                        .data(TeacherChangeDTO.class, change)
+                        .build());
+            }
+
+            @Override
+            public void onOverflow(TeacherChangeDTO lastDelivered) {
+                if (eventSink.isClosed()) return;
+                eventSink.send(sse.newEventBuilder()
+                        .name("overflow")
+                        .data(String.class, lastDelivered == null ? "" : lastDelivered.token())
+                        .build());
+            }
+
+            @Override
+            public void onClose() {
+                try {
+                    eventSink.close();
+                } catch (IOException e) {
+                    // The client is already gone
+                }
+            }
+        });
+    }
+
+    @GET
+    @Path("/cache/stats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getCacheStats() {
+        List<CacheStatsDTO> stats = teacherService.getCacheStats();
+        return Response.status(Response.Status.OK).entity(stats).build();
+    }
+
+    // If-Match carries the ETag of GET /teachers/{id}, i.e. the version the client last saw. It becomes the version
+    // condition of the single-statement write, so the check costs no query of its own and can not race the write.
+    // Without If-Match, or with "*", the version sent with the request (if any) decides.
+    private static Long requiredVersion(Long id, HttpHeaders headers, Long requestVersion) throws EntityPreconditionFailedException {
+        String ifMatch = headers.getHeaderString(HttpHeaders.IF_MATCH);
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) return requestVersion;
+        Long version = parseVersionTag(ifMatch.trim());
+        if (version == null || (requestVersion != null && !requestVersion.equals(version))) {
+            throw new EntityPreconditionFailedException("Teacher", "If-Match " + ifMatch + " does not match teacher " + id);
+        }
+        return version;
+    }
+
+    // If-Match compares strongly, so a weak tag never matches; a list of tags can not name one version either
+    private static Long parseVersionTag(String tag) {
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) return null;
+        try {
+            return Long.valueOf(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static EntityOutdatedException ifMatchFailed(HttpHeaders headers, EntityOutdatedException e) {
+        String ifMatch = headers.getHeaderString(HttpHeaders.IF_MATCH);
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) return e;
+        return new EntityPreconditionFailedException("Teacher", e.getMessage());
+    }
+
+    // Rows written before updatedAt existed only get an ETag
+    private static Response.ResponseBuilder evaluatePreconditions(Request request, EntityTag etag, Date lastModified) {
+        return lastModified == null ? request.evaluatePreconditions(etag) : request.evaluatePreconditions(lastModified, etag);
+    }
+
+    // A teacher's version changes with every write, so it identifies the representation on its own
+    private static EntityTag toEntityTag(TeacherReadOnlyDTO teacher) {
+        return new EntityTag(String.valueOf(teacher.version()));
+    }
+
+    private static EntityTag toEntityTag(ResourceVersionDTO version) {
+        long micros = version.lastModified() == null ? 0
+                : ChronoUnit.MICROS.between(EPOCH, version.lastModified());
+        return new EntityTag(Long.toHexString(version.count()) + "-" + Long.toHexString(micros));
+    }
+
+    private static Date toDate(LocalDateTime lastModified) {
+        return lastModified == null ? null : Date.from(lastModified.atZone(ZoneId.systemDefault()).toInstant());
     }
 }
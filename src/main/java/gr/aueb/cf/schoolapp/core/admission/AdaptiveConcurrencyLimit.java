@@ -0,0 +1,62 @@
+package gr.aueb.cf.schoolapp.core.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Gradient limit: compares a short-term latency average with a long-term one. While the short one rises
+// above the long one (requests queue, e.g. on the connection pool) the limit shrinks towards the concurrency
+// the backend actually sustains, and while latency stays flat it grows by a sqrt(limit) headroom.
+public class AdaptiveConcurrencyLimit {
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private double shortLatency;
+    private double longLatency;
+
+    public AdaptiveConcurrencyLimit(int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = maxLimit;
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) return false;
+            if (inFlight.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    public void release(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        update(latencyNanos, current);
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void update(long latencyNanos, int inFlightAtRelease) {
+        if (shortLatency == 0) {
+            shortLatency = longLatency = latencyNanos;
+            return;
+        }
+        shortLatency = shortLatency * 0.9 + latencyNanos * 0.1;
+        longLatency = longLatency * 0.99 + latencyNanos * 0.01;
+        // After a spike the long average lags high, pull it back so the limit can recover
+        if (longLatency > shortLatency * 2) longLatency *= 0.95;
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        // Only grow when the current limit is actually being used
+        if (inFlightAtRelease < limit / 2) newLimit = Math.min(newLimit, limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+    }
+}
@@ -0,0 +1,167 @@
+package gr.aueb.cf.schoolapp.core.admission;
+
+import gr.aueb.cf.schoolapp.core.exceptions.AppOverloadedException;
+import gr.aueb.cf.schoolapp.core.metrics.MetricsRegistry;
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.ext.Providers;
+import jakarta.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+// Rejects work the database cannot take right now instead of letting it queue on the connection pool:
+// a per-client token bucket first (when configured), then an adaptive concurrency limit per route class (reads, writes).
+// Rejected requests still show up in the request metrics, MetricsListener records every finished request.
+// The permit is given back on the FINISHED request event, which unlike the response filters also fires when
+// an exception without a mapper ends the request.
+@Provider
+@Priority(Priorities.USER + 100)
+public class AdmissionControlFilter implements ContainerRequestFilter, ApplicationEventListener {
+    private static final String PERMIT_PROPERTY = AdmissionControlFilter.class.getName() + ".permit";
+    private static final String START_PROPERTY = AdmissionControlFilter.class.getName() + ".start";
+    // Peer address, set as a request attribute by the container glue (RemoteAddressFilter, SchoolServer)
+    public static final String REMOTE_ADDRESS_PROPERTY = "gr.aueb.cf.schoolapp.remoteAddress";
+    // Observability and health endpoints must stay reachable while the application is overloaded
+    private static final Set<String> EXEMPT_PATHS = Set.of("metrics", "diagnostics", "health");
+
+    private static final AdaptiveConcurrencyLimit readLimit = new AdaptiveConcurrencyLimit(
+            Integer.parseInt(envOrDefault("SCHOOL7_ADMISSION_READ_MIN", "4")),
+            Integer.parseInt(envOrDefault("SCHOOL7_ADMISSION_READ_MAX", "64")));
+    private static final AdaptiveConcurrencyLimit writeLimit = new AdaptiveConcurrencyLimit(
+            Integer.parseInt(envOrDefault("SCHOOL7_ADMISSION_WRITE_MIN", "2")),
+            Integer.parseInt(envOrDefault("SCHOOL7_ADMISSION_WRITE_MAX", "16")));
+    // Peers (comma separated addresses) whose X-Forwarded-For is believed. Any other peer could send a new
+    // address with every request and get a fresh bucket each time, so for them the peer address is the client.
+    private static final Set<String> TRUSTED_PROXIES = Arrays.stream(envOrDefault("SCHOOL7_ADMISSION_TRUSTED_PROXIES", "").split(","))
+            .map(String::trim).filter(address -> !address.isEmpty()).collect(Collectors.toUnmodifiableSet());
+    // Off unless a rate or the trusted proxies are configured: behind a load balancer every request has the
+    // balancer as its peer, and one bucket for all of them would cap the whole site at the per-client rate
+    private static final String CONFIGURED_CLIENT_RATE = envOrDefault("SCHOOL7_ADMISSION_CLIENT_RATE", null);
+    private static final boolean CLIENT_LIMITED = CONFIGURED_CLIENT_RATE != null || !TRUSTED_PROXIES.isEmpty();
+    private static final double CLIENT_RATE = Double.parseDouble(CONFIGURED_CLIENT_RATE == null ? "50" : CONFIGURED_CLIENT_RATE);
+    private static final double CLIENT_BURST = Double.parseDouble(envOrDefault("SCHOOL7_ADMISSION_CLIENT_BURST", "100"));
+    private static final int MAX_CLIENTS = Integer.parseInt(envOrDefault("SCHOOL7_ADMISSION_MAX_CLIENTS", "10000"));
+    private static final Map<String, TokenBucket> clientBuckets = new ConcurrentHashMap<>();
+    private static final AtomicBoolean pruning = new AtomicBoolean();
+
+    static {
+        MetricsRegistry.gauge("admission_limit", "Current adaptive concurrency limit", MetricsRegistry.labels("class", "read"), readLimit::getLimit);
+        MetricsRegistry.gauge("admission_limit", "Current adaptive concurrency limit", MetricsRegistry.labels("class", "write"), writeLimit::getLimit);
+        MetricsRegistry.gauge("admission_in_flight", "Admitted requests in flight", MetricsRegistry.labels("class", "read"), readLimit::getInFlight);
+        MetricsRegistry.gauge("admission_in_flight", "Admitted requests in flight", MetricsRegistry.labels("class", "write"), writeLimit::getInFlight);
+    }
+
+    @Context
+    private Providers providers;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        String path = requestContext.getUriInfo().getPath();
+        String firstSegment = path.startsWith("/") ? path.substring(1) : path;
+        int slash = firstSegment.indexOf('/');
+        if (EXEMPT_PATHS.contains(slash < 0 ? firstSegment : firstSegment.substring(0, slash))) return;
+
+        if (CLIENT_LIMITED) {
+            String client = clientKey(requestContext);
+            long retryAfter = clientBucket(client).tryAcquire();
+            if (retryAfter > 0) {
+                reject(requestContext, "client", new AppOverloadedException("Client", "Rate limit exceeded for " + client, retryAfter));
+                return;
+            }
+        }
+
+        boolean read = isRead(requestContext.getMethod());
+        AdaptiveConcurrencyLimit limit = read ? readLimit : writeLimit;
+        if (!limit.tryAcquire()) {
+            reject(requestContext, read ? "read" : "write",
+                    new AppOverloadedException("Server", "Too many concurrent requests, try again later", 1));
+            return;
+        }
+        requestContext.setProperty(PERMIT_PROPERTY, limit);
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return event -> {
+            if (event.getType() == RequestEvent.Type.FINISHED) release(event.getContainerRequest());
+        };
+    }
+
+    private static void release(ContainerRequestContext requestContext) {
+        if (requestContext.getProperty(PERMIT_PROPERTY) instanceof AdaptiveConcurrencyLimit limit
+                && requestContext.getProperty(START_PROPERTY) instanceof Long start) {
+            requestContext.removeProperty(PERMIT_PROPERTY);
+            limit.release(System.nanoTime() - start);
+        }
+    }
+
+    private void reject(ContainerRequestContext requestContext, String reason, AppOverloadedException e) {
+        MetricsRegistry.counter("admission_rejected_total", "Requests rejected by admission control",
+                MetricsRegistry.labels("reason", reason)).increment();
+        requestContext.abortWith(providers.getExceptionMapper(AppOverloadedException.class).toResponse(e));
+    }
+
+    private static TokenBucket clientBucket(String client) {
+        TokenBucket bucket = clientBuckets.get(client);
+        if (bucket != null) return bucket;
+        bucket = clientBuckets.computeIfAbsent(client, key -> new TokenBucket(CLIENT_RATE, CLIENT_BURST));
+        if (clientBuckets.size() > MAX_CLIENTS) pruneClientBuckets();
+        return bucket;
+    }
+
+    // A bucket that has refilled is no different from a new one, so dropping it forgets nothing.
+    // One thread prunes at a time, the others carry on.
+    private static void pruneClientBuckets() {
+        if (!pruning.compareAndSet(false, true)) return;
+        try {
+            clientBuckets.values().removeIf(TokenBucket::isFull);
+        } finally {
+            pruning.set(false);
+        }
+    }
+
+    private static String clientKey(ContainerRequestContext requestContext) {
+        String peer = requestContext.getProperty(REMOTE_ADDRESS_PROPERTY) instanceof String address ? address : "unknown";
+        return clientKey(peer, requestContext.getHeaderString("X-Forwarded-For"), TRUSTED_PROXIES);
+    }
+
+    // The peer address, unless the peer is a trusted proxy: then X-Forwarded-For is walked back from the nearest
+    // hop and the first address no trusted proxy added is the client. Hops further left are whatever the client sent.
+    static String clientKey(String peer, String forwarded, Set<String> trustedProxies) {
+        if (forwarded == null || forwarded.isBlank() || !trustedProxies.contains(peer)) return peer;
+        String[] hops = forwarded.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !trustedProxies.contains(hop)) return hop;
+        }
+        return peer;
+    }
+
+    private static boolean isRead(String method) {
+        return HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method) || HttpMethod.OPTIONS.equals(method);
+    }
+
+    // A system property wins over the environment, like the JPAHelper settings
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getProperty(name, System.getenv(name));
+        return value == null ? defaultValue : value;
+    }
+}
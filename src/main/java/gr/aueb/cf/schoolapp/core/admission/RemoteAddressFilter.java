@@ -0,0 +1,21 @@
+package gr.aueb.cf.schoolapp.core.admission;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.annotation.WebFilter;
+
+import java.io.IOException;
+
+// Servlet deployments: Jersey exposes servlet request attributes as request properties
+@WebFilter(urlPatterns = "/api/*", asyncSupported = true)
+public class RemoteAddressFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        request.setAttribute(AdmissionControlFilter.REMOTE_ADDRESS_PROPERTY, request.getRemoteAddr());
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,105 @@
+package gr.aueb.cf.schoolapp.core.cache;
+
+import gr.aueb.cf.schoolapp.dto.CacheStatsDTO;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+
+// LRU cache bounded by size whose entries also expire after a fixed TTL.
+// The removal listener sees every entry that leaves the cache (eviction, expiry, invalidation or replacement).
+public class BoundedCache<K, V> {
+    private final String name;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final BiConsumer<K, V> removalListener;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public BoundedCache(String name, int maxSize, Duration ttl) {
+        this(name, maxSize, ttl, (k, v) -> {});
+    }
+
+    public BoundedCache(String name, int maxSize, Duration ttl, BiConsumer<K, V> removalListener) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.removalListener = removalListener;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    public synchronized Optional<V> get(K key) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            entries.remove(key);
+            removalListener.accept(key, entry.value());
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(entry.value());
+    }
+
+    public synchronized void put(K key, V value) {
+        putUnless(key, value, (current, candidate) -> false);
+    }
+
+    // Keeps a live entry when keepCurrent(current, candidate) holds, e.g. when it is a newer version of the same row.
+    // Returns whether value was stored.
+    public synchronized boolean putUnless(K key, V value, BiPredicate<? super V, ? super V> keepCurrent) {
+        CacheEntry<V> current = entries.get(key);
+        if (current != null && !current.isExpired(System.nanoTime()) && keepCurrent.test(current.value(), value)) {
+            return false;
+        }
+        CacheEntry<V> previous = entries.put(key, new CacheEntry<>(value, System.nanoTime() + ttlNanos));
+        if (previous != null) {
+            removalListener.accept(key, previous.value());
+        }
+        if (entries.size() > maxSize) {
+            Iterator<Map.Entry<K, CacheEntry<V>>> eldest = entries.entrySet().iterator();
+            Map.Entry<K, CacheEntry<V>> evicted = eldest.next();
+            eldest.remove();
+            evictions.increment();
+            removalListener.accept(evicted.getKey(), evicted.getValue().value());
+        }
+        return true;
+    }
+
+    public synchronized void invalidate(K key) {
+        CacheEntry<V> removed = entries.remove(key);
+        if (removed != null) {
+            removalListener.accept(key, removed.value());
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entries.forEach((key, entry) -> removalListener.accept(key, entry.value()));
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public CacheStatsDTO stats() {
+        return new CacheStatsDTO(name, hits.sum(), misses.sum(), evictions.sum(), size(), maxSize);
+    }
+
+    private record CacheEntry<V>(V value, long expiresAtNanos) {
+        boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
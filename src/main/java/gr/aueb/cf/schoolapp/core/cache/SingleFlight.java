@@ -0,0 +1,58 @@
+package gr.aueb.cf.schoolapp.core.cache;
+
+import gr.aueb.cf.schoolapp.core.metrics.MetricsRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Concurrent calls with the same key share one execution: the first caller runs it, the others wait for its
+// result (or its exception). The key is dropped as soon as the call completes, so nothing is cached beyond it.
+public class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed;
+    private final LongAdder coalesced;
+
+    public SingleFlight(String name) {
+        this.executed = MetricsRegistry.counter("singleflight_calls_total", "Calls per flight, executed or coalesced into one in flight",
+                MetricsRegistry.labels("flight", name, "result", "executed"));
+        this.coalesced = MetricsRegistry.counter("singleflight_calls_total", "Calls per flight, executed or coalesced into one in flight",
+                MetricsRegistry.labels("flight", name, "result", "coalesced"));
+    }
+
+    @FunctionalInterface
+    public interface Call<V, E extends Exception> {
+        V call() throws E;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <E extends Exception> V execute(K key, Call<V, E> call) throws E {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException runtime) throw runtime;
+                if (cause instanceof Error error) throw error;
+                throw (E) cause;
+            }
+        }
+
+        executed.increment();
+        try {
+            V value = call.call();
+            inFlight.remove(key, flight);
+            flight.complete(value);
+            return value;
+        } catch (Throwable e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package gr.aueb.cf.schoolapp.core.diagnostics;
+
+import gr.aueb.cf.schoolapp.core.metrics.MetricsRegistry;
+import gr.aueb.cf.schoolapp.dto.QueryBudgetViolationDTO;
+import gr.aueb.cf.schoolapp.dto.QueryDiagnosticsDTO;
+import gr.aueb.cf.schoolapp.dto.RouteQueryStatsDTO;
+import gr.aueb.cf.schoolapp.dto.SlowQueryDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Per-request SQL accounting fed by SqlStatementInspector (statement text) and QueryTimingSessionListener (JDBC timing).
+// Both run on the thread executing the statement, so the state of the statement and of the request is thread-bound;
+// work handed to another thread for the request (the shard scatter-gather) takes it along with wrap().
+public class QueryDiagnostics {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryDiagnostics.class);
+    private static final long SLOW_QUERY_MILLIS = Long.parseLong(envOrDefault("SCHOOL7_SLOW_QUERY_MS", "200"));
+    private static final int QUERY_BUDGET = Integer.parseInt(envOrDefault("SCHOOL7_QUERY_BUDGET", "10"));
+    private static final int MAX_RECENT = 50;
+
+    private static final ThreadLocal<String> lastSql = new ThreadLocal<>();
+    private static final ThreadLocal<Context> context = new ThreadLocal<>();
+    private static final ThreadLocal<RequestQueries> currentRequest = new ThreadLocal<>();
+
+    private static final Map<String, RouteStats> routes = new ConcurrentHashMap<>();
+    private static final Deque<SlowQueryDTO> slowQueries = new ArrayDeque<>();
+    private static final Deque<QueryBudgetViolationDTO> budgetViolations = new ArrayDeque<>();
+    private static final LongAdder slowStatements = MetricsRegistry.counter("db_slow_statements_total",
+            "Statements slower than SCHOOL7_SLOW_QUERY_MS", "");
+    private static final LongAdder budgetExceeded = MetricsRegistry.counter("db_query_budget_exceeded_total",
+            "Requests that ran more statements than SCHOOL7_QUERY_BUDGET", "");
+
+    private QueryDiagnostics() {
+    }
+
+    // Parameters are only formatted when a statement turns out slow
+    public static <R> R withContext(String operation, Object parameters, Supplier<R> work) {
+        Context previous = context.get();
+        context.set(new Context(operation, parameters));
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) context.remove(); else context.set(previous);
+        }
+    }
+
+    // Runs work with the calling thread's request and context, wherever it is invoked
+    public static <R> Supplier<R> wrap(Supplier<R> work) {
+        RequestQueries request = currentRequest.get();
+        Context caller = context.get();
+        return () -> {
+            RequestQueries previousRequest = currentRequest.get();
+            Context previous = context.get();
+            currentRequest.set(request);
+            context.set(caller);
+            try {
+                return work.get();
+            } finally {
+                if (previousRequest == null) currentRequest.remove(); else currentRequest.set(previousRequest);
+                if (previous == null) context.remove(); else context.set(previous);
+            }
+        };
+    }
+
+    static void statementPrepared(String sql) {
+        lastSql.set(sql);
+    }
+
+    static void statementExecuted(long nanos) {
+        String sql = lastSql.get();
+        RequestQueries request = currentRequest.get();
+        if (request != null) request.record(sql, nanos);
+        if (nanos >= SLOW_QUERY_MILLIS * 1_000_000) {
+            slowStatements.increment();
+            String route = request == null ? null : request.route;
+            Context current = context.get();
+            String description = current == null ? null : current.operation + " " + current.parameters;
+            LOGGER.warn("Slow statement ({} ms) route={} context={} sql={}", nanos / 1_000_000, route, description, sql);
+            addRecent(slowQueries, new SlowQueryDTO(Instant.now().toString(), route, sql, description, nanos / 1_000_000.0));
+        }
+    }
+
+    static RequestQueries beginRequest(String route) {
+        RequestQueries request = new RequestQueries(route);
+        currentRequest.set(request);
+        return request;
+    }
+
+    static void endRequest(RequestQueries request) {
+        if (currentRequest.get() == request) currentRequest.remove();
+        RouteStats stats = routes.computeIfAbsent(request.route, r -> new RouteStats());
+        stats.requests.increment();
+        stats.statements.add(request.statements);
+        stats.nanos.add(request.nanos);
+        stats.maxStatements.accumulate(request.statements);
+        if (request.statements > QUERY_BUDGET) {
+            // Most often an N+1: the same statement shape repeated once per row of an earlier result
+            Map.Entry<String, Integer> mostRepeated = request.perSql.entrySet().stream()
+                    .max(Map.Entry.comparingByValue()).orElse(Map.entry("", 0));
+            stats.budgetViolations.increment();
+            budgetExceeded.increment();
+            LOGGER.warn("Query budget exceeded: route={} statements={} budget={} mostRepeated={}x {}", request.route,
+                    request.statements, QUERY_BUDGET, mostRepeated.getValue(), mostRepeated.getKey());
+            addRecent(budgetViolations, new QueryBudgetViolationDTO(Instant.now().toString(), request.route,
+                    request.statements, mostRepeated.getKey(), mostRepeated.getValue()));
+        }
+    }
+
+    public static QueryDiagnosticsDTO summary() {
+        List<RouteQueryStatsDTO> routeStats = new ArrayList<>();
+        routes.forEach((route, stats) -> {
+            long requests = stats.requests.sum();
+            long statements = stats.statements.sum();
+            routeStats.add(new RouteQueryStatsDTO(route, requests, statements, stats.maxStatements.get(),
+                    requests == 0 ? 0 : (double) statements / requests,
+                    requests == 0 ? 0 : stats.nanos.sum() / 1_000_000.0 / requests,
+                    stats.budgetViolations.sum()));
+        });
+        routeStats.sort(Comparator.comparing(RouteQueryStatsDTO::statementsPerRequest).reversed());
+        synchronized (QueryDiagnostics.class) {
+            return new QueryDiagnosticsDTO(SLOW_QUERY_MILLIS, QUERY_BUDGET, routeStats,
+                    List.copyOf(slowQueries), List.copyOf(budgetViolations));
+        }
+    }
+
+    private static <E> void addRecent(Deque<E> recent, E entry) {
+        synchronized (QueryDiagnostics.class) {
+            if (recent.size() == MAX_RECENT) recent.removeFirst();
+            recent.addLast(entry);
+        }
+    }
+
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private record Context(String operation, Object parameters) {}
+
+    static class RequestQueries {
+        private final String route;
+        private final Map<String, Integer> perSql = new HashMap<>();
+        private int statements;
+        private long nanos;
+
+        private RequestQueries(String route) {
+            this.route = route;
+        }
+
+        // Shard workers of one request record in parallel
+        private synchronized void record(String sql, long elapsed) {
+            statements++;
+            nanos += elapsed;
+            if (sql != null) perSql.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    private static class RouteStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder budgetViolations = new LongAdder();
+        private final LongAccumulator maxStatements = new LongAccumulator(Math::max, 0);
+    }
+}
@@ -0,0 +1,42 @@
+package gr.aueb.cf.schoolapp.core.diagnostics;
+
+import jakarta.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import java.lang.reflect.Method;
+
+// The resource method events fire on the thread that invokes the resource method, which with managed async
+// (virtual threads) is not the thread that ran the request filters. Output streamed after the method returns is not counted.
+@Provider
+public class QueryDiagnosticsListener implements ApplicationEventListener {
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        return new RequestEventListener() {
+            private QueryDiagnostics.RequestQueries request;
+
+            @Override
+            public void onEvent(RequestEvent event) {
+                switch (event.getType()) {
+                    case RESOURCE_METHOD_START -> {
+                        Method method = event.getUriInfo().getMatchedResourceMethod().getInvocable().getHandlingMethod();
+                        request = QueryDiagnostics.beginRequest(method.getDeclaringClass().getSimpleName() + "." + method.getName());
+                    }
+                    case RESOURCE_METHOD_FINISHED -> {
+                        if (request != null) QueryDiagnostics.endRequest(request);
+                        request = null;
+                    }
+                    default -> {
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package gr.aueb.cf.schoolapp.core.diagnostics;
+
+import org.hibernate.SessionEventListener;
+
+// Registered through hibernate.session.events.auto, one instance per session
+public class QueryTimingSessionListener implements SessionEventListener {
+    private long statementStart;
+    private long batchStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        statementStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        QueryDiagnostics.statementExecuted(System.nanoTime() - statementStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batchStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        QueryDiagnostics.statementExecuted(System.nanoTime() - batchStart);
+    }
+}
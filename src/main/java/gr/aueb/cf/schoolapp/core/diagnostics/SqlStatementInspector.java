@@ -0,0 +1,13 @@
+package gr.aueb.cf.schoolapp.core.diagnostics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Registered as hibernate.session_factory.statement_inspector; sees every statement right before it is prepared
+public class SqlStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        QueryDiagnostics.statementPrepared(sql);
+        return sql;
+    }
+}
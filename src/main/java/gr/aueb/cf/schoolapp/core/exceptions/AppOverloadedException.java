@@ -0,0 +1,14 @@
+package gr.aueb.cf.schoolapp.core.exceptions;
+
+import lombok.Getter;
+
+@Getter
+public class AppOverloadedException extends AppServerException {
+    private static final String DEFAULT_CODE = "Overloaded";
+    private final long retryAfterSeconds;
+
+    public AppOverloadedException(String code, String message, long retryAfterSeconds) {
+        super(code + DEFAULT_CODE, message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,14 @@
+package gr.aueb.cf.schoolapp.core.exceptions;
+
+public class EntityOutdatedException extends EntityGenericException {
+    private static final String DEFAULT_CODE = "Outdated";
+
+    public EntityOutdatedException(String code, String message) {
+        this(code, DEFAULT_CODE, message);
+    }
+
+    // For subclasses that replace the "Outdated" suffix with their own
+    protected EntityOutdatedException(String code, String suffix, String message) {
+        super(code + suffix, message);
+    }
+}
@@ -0,0 +1,10 @@
+package gr.aueb.cf.schoolapp.core.exceptions;
+
+// An If-Match that does not match the current version
+public class EntityPreconditionFailedException extends EntityOutdatedException {
+    private static final String DEFAULT_CODE = "PreconditionFailed";
+
+    public EntityPreconditionFailedException(String code, String message) {
+        super(code, DEFAULT_CODE, message);
+    }
+}
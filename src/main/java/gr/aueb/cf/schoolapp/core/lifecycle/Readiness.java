@@ -0,0 +1,60 @@
+package gr.aueb.cf.schoolapp.core.lifecycle;
+
+import gr.aueb.cf.schoolapp.dto.BootPhaseDTO;
+import gr.aueb.cf.schoolapp.dto.ReadinessDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+// Boot progress shared by StartupLifecycleListener (writer) and /api/health/ready (reader)
+public class Readiness {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Readiness.class);
+
+    public enum Status { STARTING, READY, FAILED }
+
+    private static final List<BootPhaseDTO> phases = new CopyOnWriteArrayList<>();
+    private static volatile Status status = Status.STARTING;
+    private static volatile String message;
+    private static volatile long totalMillis;
+
+    private Readiness() {
+    }
+
+    public static boolean isReady() {
+        return status == Status.READY;
+    }
+
+    public static ReadinessDTO report() {
+        return new ReadinessDTO(status.name(), List.copyOf(phases), totalMillis, message);
+    }
+
+    static <R> R phase(String name, Supplier<R> work) {
+        long start = System.nanoTime();
+        R result = work.get();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        phases.add(new BootPhaseDTO(name, millis));
+        LOGGER.info("Boot phase {} took {} ms", name, millis);
+        return result;
+    }
+
+    static void starting() {
+        phases.clear();
+        status = Status.STARTING;
+        message = null;
+        totalMillis = 0;
+    }
+
+    static void ready(long millis) {
+        totalMillis = millis;
+        message = null;
+        status = Status.READY;
+    }
+
+    static void failed(String reason) {
+        message = reason;
+        status = Status.FAILED;
+    }
+}
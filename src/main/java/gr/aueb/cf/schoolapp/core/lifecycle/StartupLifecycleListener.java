@@ -0,0 +1,175 @@
+package gr.aueb.cf.schoolapp.core.lifecycle;
+
+import gr.aueb.cf.schoolapp.core.admission.AdmissionControlFilter;
+import gr.aueb.cf.schoolapp.dto.PaginatedResult;
+import gr.aueb.cf.schoolapp.dto.TeacherInsertDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherPatchDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherUpdateDTO;
+import gr.aueb.cf.schoolapp.service.util.JPAHelper;
+import gr.aueb.cf.schoolapp.service.util.ShardRouter;
+import gr.aueb.cf.schoolapp.validator.ValidatorUtil;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.SecurityContext;
+import jakarta.ws.rs.ext.Provider;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.spi.Container;
+import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.security.Principal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Does on startup what the first requests would otherwise pay for: the EntityManagerFactories, the validator,
+// a full connection pool, then a few rounds of representative read requests through the whole Jersey stack
+// (filters, resource methods, Hibernate query plans, Jackson serializers) so the JIT and the caches are hot.
+// Runs in the background; /api/health/ready answers 503 until it is done. Nothing is written to the database.
+@Provider
+public class StartupLifecycleListener implements ContainerLifecycleListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupLifecycleListener.class);
+    private static final URI BASE_URI = URI.create("http://localhost/api/");
+    private static final int WARMUP_ITERATIONS = Integer.parseInt(envOrDefault("SCHOOL7_WARMUP_ITERATIONS", "20"));
+    private static final long RETRY_MILLIS = 5_000;
+    private static final int OVERLOADED_ATTEMPTS = 3;
+    private static final List<String> WARMUP_PATHS = List.of(
+            "teachers/count?approximate=true",
+            "teachers/cursor?size=20",
+            "teachers?lastname=warmup",
+            "teachers/search?q=warmup",
+            "teachers/changes?limit=10");
+
+    private static final SecurityContext ANONYMOUS = new SecurityContext() {
+        @Override
+        public Principal getUserPrincipal() {
+            return null;
+        }
+
+        @Override
+        public boolean isUserInRole(String role) {
+            return false;
+        }
+
+        @Override
+        public boolean isSecure() {
+            return false;
+        }
+
+        @Override
+        public String getAuthenticationScheme() {
+            return null;
+        }
+    };
+
+    private volatile Thread bootThread;
+
+    @Override
+    public void onStartup(Container container) {
+        bootThread = Thread.ofVirtual().name("boot").start(() -> boot(container.getApplicationHandler()));
+    }
+
+    @Override
+    public void onReload(Container container) {
+        onShutdown(container);
+        onStartup(container);
+    }
+
+    @Override
+    public void onShutdown(Container container) {
+        Thread thread = bootThread;
+        if (thread != null) thread.interrupt();
+        JPAHelper.closeEMF();
+    }
+
+    // A database that is not reachable yet keeps the application unready and is retried, it does not fail the deploy
+    private void boot(ApplicationHandler handler) {
+        while (!Thread.currentThread().isInterrupted()) {
+            Readiness.starting();
+            long start = System.nanoTime();
+            try {
+                Readiness.phase("entityManagerFactory", () -> {
+                    for (int shard = 0; shard < ShardRouter.shardCount(); shard++) JPAHelper.getEntityManagerFactory(shard);
+                    return JPAHelper.getReplicaEntityManagerFactory();
+                });
+                Readiness.phase("validator", () -> List.of(
+                        ValidatorUtil.validateDTO(new TeacherInsertDTO("Warm", "Up", "000000000")),
+                        ValidatorUtil.validateDTO(new TeacherUpdateDTO(1L, "Warm", "Up", "000000000", 0L)),
+                        ValidatorUtil.validateDTO(new TeacherPatchDTO("Warm", null, null, 0L))));
+                int connections = Readiness.phase("connectionPool", JPAHelper::fillConnectionPools);
+                LOGGER.info("{} pooled connections open", connections);
+                Readiness.phase("warmupRequests", () -> {
+                    for (int i = 0; i < WARMUP_ITERATIONS; i++) warmUp(handler);
+                    return null;
+                });
+                Readiness.ready((System.nanoTime() - start) / 1_000_000);
+                LOGGER.info("Application ready after {} ms", (System.nanoTime() - start) / 1_000_000);
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.error("Startup failed, retrying in {} ms.", RETRY_MILLIS, e);
+                Readiness.failed(e.getMessage());
+            }
+            try {
+                Thread.sleep(RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void warmUp(ApplicationHandler handler) {
+        ContainerResponse page = get(handler, "teachers/paginated?page=0&size=20");
+        if (page.getEntity() instanceof PaginatedResult<?> result && !result.data().isEmpty()
+                && result.data().get(0) instanceof TeacherReadOnlyDTO teacher) {
+            get(handler, "teachers/" + teacher.id());
+        }
+        WARMUP_PATHS.forEach(path -> get(handler, path));
+    }
+
+    // A 503 with Retry-After is admission control shedding load (e.g. real traffic arriving during the warm-up),
+    // not a broken application: it is retried after the given delay and, if still overloaded, skipped
+    private ContainerResponse get(ApplicationHandler handler, String path) {
+        try {
+            for (int attempt = 1; ; attempt++) {
+                ContainerResponse response = handler.apply(request(handler, path)).get(30, TimeUnit.SECONDS);
+                String retryAfter = response.getHeaderString(HttpHeaders.RETRY_AFTER);
+                if (response.getStatus() == Response.Status.SERVICE_UNAVAILABLE.getStatusCode() && retryAfter != null) {
+                    if (attempt == OVERLOADED_ATTEMPTS) {
+                        LOGGER.warn("Warm-up GET {} skipped, the application is overloaded.", path);
+                        return response;
+                    }
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter)));
+                    continue;
+                }
+                if (response.getStatus() >= 500) throw new IllegalStateException("Warm-up GET " + path + " answered " + response.getStatus());
+                return response;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (Exception e) {
+            throw e instanceof RuntimeException runtime ? runtime : new IllegalStateException("Warm-up GET " + path + " failed", e);
+        }
+    }
+
+    private static ContainerRequest request(ApplicationHandler handler, String path) {
+        ContainerRequest request = new ContainerRequest(BASE_URI, BASE_URI.resolve(path), "GET", ANONYMOUS,
+                new MapPropertiesDelegate(), handler.getConfiguration());
+        request.header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
+        // There is no peer, so admission control would put warm-up traffic in the bucket of every other request
+        // without one; this gives it a bucket of its own
+        request.setProperty(AdmissionControlFilter.REMOTE_ADDRESS_PROPERTY, "warmup");
+        return request;
+    }
+
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : value;
+    }
+}
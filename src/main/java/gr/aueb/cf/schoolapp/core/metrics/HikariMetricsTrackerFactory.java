@@ -0,0 +1,40 @@
+package gr.aueb.cf.schoolapp.core.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class HikariMetricsTrackerFactory implements MetricsTrackerFactory {
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        String labels = MetricsRegistry.labels("pool", poolName);
+        MetricsRegistry.gauge("hikari_connections_active", "Connections in use", labels, poolStats::getActiveConnections);
+        MetricsRegistry.gauge("hikari_connections_idle", "Idle connections", labels, poolStats::getIdleConnections);
+        MetricsRegistry.gauge("hikari_connections_pending", "Threads waiting for a connection", labels, poolStats::getPendingThreads);
+        MetricsRegistry.gauge("hikari_connections_max", "Maximum pool size", labels, poolStats::getMaxConnections);
+
+        Histogram acquire = MetricsRegistry.histogram("hikari_connection_acquire_seconds", "Time waited to get a connection from the pool", labels);
+        Histogram usage = MetricsRegistry.histogram("hikari_connection_usage_seconds", "Time a connection was held before being returned", labels);
+        LongAdder timeouts = MetricsRegistry.counter("hikari_connection_timeouts_total", "Connection requests that timed out", labels);
+
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquire.observeNanos(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usage.observe(elapsedBorrowedMillis / 1000.0);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+}
@@ -0,0 +1,46 @@
+package gr.aueb.cf.schoolapp.core.metrics;
+
+import jakarta.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import java.lang.reflect.Method;
+
+// Records every request once it is FINISHED, including the ones rejected by a filter and the ones ended by an
+// exception without a mapper, which skip the response filters and are answered 500 by the container
+@Provider
+public class MetricsListener implements ApplicationEventListener {
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        long start = System.nanoTime();
+        return event -> {
+            if (event.getType() == RequestEvent.Type.FINISHED) record(event, System.nanoTime() - start);
+        };
+    }
+
+    private static void record(RequestEvent event, long elapsedNanos) {
+        // Route by resource method rather than raw path so ids do not explode the label space
+        ResourceMethod matched = event.getUriInfo() == null ? null : event.getUriInfo().getMatchedResourceMethod();
+        Method method = matched == null ? null : matched.getInvocable().getDefinitionMethod();
+        String route = method == null ? "unmatched" : method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        String httpMethod = event.getContainerRequest().getMethod();
+        ContainerResponse response = event.getContainerResponse();
+        int status = response == null ? 500 : response.getStatus();
+
+        MetricsRegistry.histogram("http_server_requests_seconds", "Request latency per route",
+                MetricsRegistry.labels("method", httpMethod, "route", route))
+                .observeNanos(elapsedNanos);
+        MetricsRegistry.counter("http_server_responses_total", "Responses per route and status",
+                MetricsRegistry.labels("method", httpMethod, "route", route, "status", Integer.toString(status)))
+                .increment();
+    }
+}
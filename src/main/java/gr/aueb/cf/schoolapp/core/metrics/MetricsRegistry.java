@@ -0,0 +1,89 @@
+package gr.aueb.cf.schoolapp.core.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class MetricsRegistry {
+    private static final Map<String, Family<Histogram>> histograms = new ConcurrentSkipListMap<>();
+    private static final Map<String, Family<LongAdder>> counters = new ConcurrentSkipListMap<>();
+    private static final Map<String, Family<Supplier<? extends Number>>> gauges = new ConcurrentSkipListMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    public static Histogram histogram(String name, String help, String labels) {
+        return histograms.computeIfAbsent(name, n -> new Family<>(help)).metrics
+                .computeIfAbsent(labels, l -> new Histogram());
+    }
+
+    public static LongAdder counter(String name, String help, String labels) {
+        return counters.computeIfAbsent(name, n -> new Family<>(help)).metrics
+                .computeIfAbsent(labels, l -> new LongAdder());
+    }
+
+    public static void gauge(String name, String help, String labels, Supplier<? extends Number> value) {
+        gauges.computeIfAbsent(name, n -> new Family<>(help)).metrics.put(labels, value);
+    }
+
+    public static String labels(String... namesAndValues) {
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i + 1 < namesAndValues.length; i += 2) {
+            if (!labels.isEmpty()) labels.append(',');
+            labels.append(namesAndValues[i]).append("=\"")
+                    .append(namesAndValues[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return labels.toString();
+    }
+
+    // Prometheus text exposition format 0.0.4
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        counters.forEach((name, family) -> {
+            header(out, name, family.help, "counter");
+            family.metrics.forEach((labels, counter) -> sample(out, name, labels, counter.sum()));
+        });
+        gauges.forEach((name, family) -> {
+            header(out, name, family.help, "gauge");
+            family.metrics.forEach((labels, gauge) -> sample(out, name, labels, gauge.get().doubleValue()));
+        });
+        histograms.forEach((name, family) -> {
+            header(out, name, family.help, "histogram");
+            family.metrics.forEach((labels, histogram) -> {
+                long[] counts = histogram.bucketCounts();
+                long cumulative = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    cumulative += counts[i];
+                    String le = i < Histogram.BUCKETS.length ? Double.toString(Histogram.BUCKETS[i]) : "+Inf";
+                    sample(out, name + "_bucket", labels.isEmpty() ? "le=\"" + le + "\"" : labels + ",le=\"" + le + "\"", cumulative);
+                }
+                sample(out, name + "_sum", labels, histogram.sum());
+                sample(out, name + "_count", labels, cumulative);
+            });
+        });
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static class Family<M> {
+        private final String help;
+        private final Map<String, M> metrics = new ConcurrentHashMap<>();
+
+        private Family(String help) {
+            this.help = help;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package gr.aueb.cf.schoolapp.core.search;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+// In-memory trigram index. Every word is indexed with two leading blanks, so "  papadopoulos" yields "  p", " pa",
+// "pap", ... and one or two letter prefixes are still searchable. A document matches when it contains at least
+// minSimilarity of the query trigrams, which also tolerates small typos.
+public class TrigramIndex<K extends Comparable<K>> {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Map<String, Set<K>> postings = new ConcurrentHashMap<>();
+    private final Map<K, Set<String>> documents = new ConcurrentHashMap<>();
+    private final double minSimilarity;
+
+    public TrigramIndex(double minSimilarity) {
+        this.minSimilarity = minSimilarity;
+    }
+
+    public synchronized void put(K key, String... values) {
+        remove(key);
+        Set<String> trigrams = new HashSet<>();
+        for (String value : values) trigrams.addAll(trigrams(value));
+        documents.put(key, trigrams);
+        for (String trigram : trigrams) postings.computeIfAbsent(trigram, t -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    public synchronized void remove(K key) {
+        Set<String> trigrams = documents.remove(key);
+        if (trigrams == null) return;
+        for (String trigram : trigrams) {
+            Set<K> keys = postings.get(trigram);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) postings.remove(trigram);
+        }
+    }
+
+    public synchronized void clear() {
+        postings.clear();
+        documents.clear();
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+    // Best matches first; equal scores keep key order so results are stable between calls
+    public List<K> search(String query, int limit) {
+        Set<String> queryTrigrams = trigrams(query);
+        if (queryTrigrams.isEmpty() || limit <= 0) return List.of();
+
+        Map<K, Integer> hits = new HashMap<>();
+        for (String trigram : queryTrigrams) {
+            Set<K> keys = postings.get(trigram);
+            if (keys != null) for (K key : keys) hits.merge(key, 1, Integer::sum);
+        }
+        int required = (int) Math.ceil(queryTrigrams.size() * minSimilarity);
+        return hits.entrySet().stream()
+                .filter(hit -> hit.getValue() >= required)
+                .sorted(Map.Entry.<K, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static Set<String> trigrams(String value) {
+        if (value == null) return Set.of();
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+        Set<String> trigrams = new HashSet<>();
+        for (String word : SEPARATORS.split(normalized)) {
+            if (word.isEmpty()) continue;
+            String padded = "  " + word;
+            for (int i = 0; i + 3 <= padded.length(); i++) trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
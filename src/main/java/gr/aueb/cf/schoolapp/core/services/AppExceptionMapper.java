@@ -2,6 +2,7 @@ package gr.aueb.cf.schoolapp.core.services;
 
 import gr.aueb.cf.schoolapp.core.exceptions.*;
 import gr.aueb.cf.schoolapp.dto.ResponseMessageDTO;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.ExceptionMapper;
@@ -15,7 +16,9 @@ public class AppExceptionMapper implements ExceptionMapper<EntityGenericExceptio
         Response.Status status = Response.Status.INTERNAL_SERVER_ERROR;
         if (e instanceof EntityNotFoundException) {
             status = Response.Status.NOT_FOUND;
-        } else if (e instanceof EntityAlreadyExistsException) {
+        } else if (e instanceof EntityPreconditionFailedException) {
+            status = Response.Status.PRECONDITION_FAILED;
+        } else if (e instanceof EntityAlreadyExistsException || e instanceof EntityOutdatedException) {
             status = Response.Status.CONFLICT;
         } else if (e instanceof EntityInvalidArgumentException) {
             status = Response.Status.BAD_REQUEST;
@@ -24,9 +27,12 @@ public class AppExceptionMapper implements ExceptionMapper<EntityGenericExceptio
         } else if (e instanceof AppServerException) {
             status = Response.Status.SERVICE_UNAVAILABLE;
         }
-        return Response.status(status)
+        Response.ResponseBuilder response = Response.status(status)
                 .entity(new ResponseMessageDTO(e.getCode(), e.getMessage()))
-                .type(MediaType.APPLICATION_JSON_TYPE)
-                .build();
+                .type(MediaType.APPLICATION_JSON_TYPE);
+        if (e instanceof AppOverloadedException overloaded) {
+            response.header(HttpHeaders.RETRY_AFTER, overloaded.getRetryAfterSeconds());
+        }
+        return response.build();
     }
 }
@@ -0,0 +1,70 @@
+package gr.aueb.cf.schoolapp.core.services;
+
+import gr.aueb.cf.schoolapp.service.util.PersistenceScope;
+import jakarta.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.ManagedAsyncExecutor;
+import org.glassfish.jersey.spi.ExecutorServiceProvider;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@Provider
+@ManagedAsyncExecutor
+public class VirtualThreadExecutorProvider implements ExecutorServiceProvider {
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("SCHOOL7_VIRTUAL_THREADS", System.getenv("SCHOOL7_VIRTUAL_THREADS")));
+    }
+
+    @Override
+    public ExecutorService getExecutorService() {
+        return new ScopedExecutorService(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("request-", 0).factory()));
+    }
+
+    @Override
+    public void dispose(ExecutorService executorService) {
+        executorService.shutdown();
+    }
+
+    // Every request task gets its own PersistenceScope, closed when the task ends
+    private static class ScopedExecutorService extends AbstractExecutorService {
+        private final ExecutorService delegate;
+
+        private ScopedExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(PersistenceScope.wrap(command));
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package gr.aueb.cf.schoolapp.core.services;
+
+import jakarta.ws.rs.core.Configuration;
+import jakarta.ws.rs.ext.Provider;
+import org.glassfish.jersey.server.model.ModelProcessor;
+import org.glassfish.jersey.server.model.Resource;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.model.ResourceModel;
+
+// With SCHOOL7_VIRTUAL_THREADS=true every synchronous resource method becomes @ManagedAsync,
+// so it runs on the virtual-thread executor instead of holding a container thread while it waits on JDBC
+@Provider
+public class VirtualThreadModelProcessor implements ModelProcessor {
+
+    @Override
+    public ResourceModel processResourceModel(ResourceModel resourceModel, Configuration configuration) {
+        return process(resourceModel, false);
+    }
+
+    @Override
+    public ResourceModel processSubResource(ResourceModel subResourceModel, Configuration configuration) {
+        return process(subResourceModel, true);
+    }
+
+    private ResourceModel process(ResourceModel resourceModel, boolean subResourceModel) {
+        if (!VirtualThreadExecutorProvider.isEnabled()) return resourceModel;
+        ResourceModel.Builder builder = new ResourceModel.Builder(subResourceModel);
+        for (Resource resource : resourceModel.getResources()) {
+            builder.addResource(managedAsync(resource));
+        }
+        return builder.build();
+    }
+
+    private Resource managedAsync(Resource resource) {
+        Resource.Builder builder = Resource.builder(resource);
+        for (ResourceMethod method : resource.getResourceMethods()) {
+            if (!method.isSuspendDeclared() && !method.isSse() && !method.isManagedAsyncDeclared()) {
+                builder.updateMethod(method).managedAsync();
+            }
+        }
+        for (Resource child : resource.getChildResources()) {
+            builder.replaceChildResource(child, managedAsync(child));
+        }
+        return builder.build();
+    }
+}
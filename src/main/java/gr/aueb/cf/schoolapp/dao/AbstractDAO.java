@@ -1,15 +1,40 @@
 package gr.aueb.cf.schoolapp.dao;
 
+import gr.aueb.cf.schoolapp.core.diagnostics.QueryDiagnostics;
+import gr.aueb.cf.schoolapp.core.metrics.Histogram;
+import gr.aueb.cf.schoolapp.core.metrics.MetricsRegistry;
 import gr.aueb.cf.schoolapp.model.IdentifiableEntity;
 import gr.aueb.cf.schoolapp.service.util.JPAHelper;
+import gr.aueb.cf.schoolapp.service.util.ShardRouter;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.TypedQuery;
-import jakarta.persistence.criteria.*;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public abstract class AbstractDAO<T extends IdentifiableEntity> implements IGenericDAO<T> {
     private Class<T> persistentClass;
+    // The field whose value decides the shard of a row (see ShardRouter), null to place rows by their id
+    private String shardKeyField;
+
+    private static final int MAX_SCATTER_ROWS = 10_000;
+
+    // JPQL per criteria shape (keys + operators). Hibernate's plan cache then keys the compiled query by this string.
+    private final Map<String, String> queryCache = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> queryTimers = new ConcurrentHashMap<>();
+    private final Map<String, Field> fieldCache = new ConcurrentHashMap<>();
+
+    private enum Operator { EQUAL, LIKE, IN, IN_EMPTY, BETWEEN, IS_NULL, IS_NOT_NULL, IGNORED }
 
     public AbstractDAO() {
     }
@@ -22,59 +47,165 @@ public abstract class AbstractDAO<T extends IdentifiableEntity> implements IGene
         this.persistentClass = persistentClass;
     }
 
+    public void setShardKeyField(String shardKeyField) {
+        this.shardKeyField = shardKeyField;
+    }
+
     @Override
     public Optional<T> insert(T t) {
-        EntityManager em = getEntityManager();
-        em.persist(t);
-        return Optional.of(t);
+        return JPAHelper.onShard(shardOf(t), () -> {
+            getEntityManager().persist(t);
+            return Optional.of(t);
+        });
+    }
+
+    @Override
+    public List<T> insertAll(List<T> entities, int batchSize) {
+        Map<Integer, List<T>> byShard = new TreeMap<>();
+        for (T entity : entities) byShard.computeIfAbsent(shardOf(entity), shard -> new ArrayList<>()).add(entity);
+        byShard.forEach((shard, shardEntities) -> JPAHelper.onShard(shard, () -> {
+            EntityManager em = getEntityManager();
+            for (int i = 0; i < shardEntities.size(); i++) {
+                em.persist(shardEntities.get(i));
+                if ((i + 1) % batchSize == 0) {
+                    // Send the JDBC batch and keep the persistence context small
+                    em.flush();
+                    em.clear();
+                }
+            }
+            em.flush();
+            return null;
+        }));
+        return entities;
     }
 
     @Override
     public Optional<T> update(T t) {
-        Optional<T> toUpdate = getById(t.getId());
-        if (toUpdate.isEmpty()) {
-            return Optional.empty();
-        } else {
-            getEntityManager().merge(t);
-            return Optional.of(t);
-        }
+        return JPAHelper.onShard(ShardRouter.shardForId(t.getId()), () -> {
+            Optional<T> toUpdate = getById(t.getId());
+            if (toUpdate.isEmpty()) {
+                return Optional.empty();
+            } else {
+                getEntityManager().merge(t);
+                return Optional.of(t);
+            }
+        });
     }
 
     @Override
     public void delete(Object id) {
-        Optional<T> toDelete = getById(id);
-        toDelete.ifPresent(getEntityManager()::remove);
+        JPAHelper.onShard(ShardRouter.shardForId(id), () -> {
+            Optional<T> toDelete = getById(id);
+            toDelete.ifPresent(getEntityManager()::remove);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean isShardKeyCompatible(Object id, Object shardKey) {
+        return shardKeyField == null || ShardRouter.shardForId(id) == ShardRouter.shardForKey(shardKey);
+    }
+
+    @Override
+    public int updateFieldsByIdAndVersion(Object id, Long version, Map<String, Object> fields, LocalDateTime updatedAt) {
+        // One statement, no read first: the version condition turns a lost update into 0 rows updated.
+        // Bulk updates bypass @Version and @PreUpdate, so both columns are written here.
+        SortedSet<String> names = new TreeSet<>(fields.keySet());
+        String jpql = queryCache.computeIfAbsent("UPDATE|" + persistentClass.getName() + "|" + names + "|" + (version != null),
+                key -> {
+                    StringBuilder update = new StringBuilder("UPDATE " + persistentClass.getSimpleName() + " e SET ");
+                    for (String name : names) update.append("e.").append(name).append(" = :").append(buildParameterAlias(name)).append(", ");
+                    update.append("e.version = e.version + 1, e.updatedAt = :updatedAt WHERE e.id = :id");
+                    if (version != null) update.append(" AND e.version = :version");
+                    return update.toString();
+                });
+        return JPAHelper.onShard(ShardRouter.shardForId(id), () -> {
+            jakarta.persistence.Query query = getEntityManager().createQuery(jpql);
+            fields.forEach((name, value) -> query.setParameter(buildParameterAlias(name), value));
+            query.setParameter("updatedAt", updatedAt);
+            query.setParameter("id", id);
+            if (version != null) query.setParameter("version", version);
+            return timed("updateFieldsByIdAndVersion", id, query::executeUpdate);
+        });
+    }
+
+    @Override
+    public int deleteByIdAndVersion(Object id, Long version) {
+        String jpql = "DELETE FROM " + persistentClass.getSimpleName() + " e WHERE e.id = :id" + (version != null ? " AND e.version = :version" : "");
+        return JPAHelper.onShard(ShardRouter.shardForId(id), () -> {
+            jakarta.persistence.Query query = getEntityManager().createQuery(jpql);
+            query.setParameter("id", id);
+            if (version != null) query.setParameter("version", version);
+            return timed("deleteByIdAndVersion", id, query::executeUpdate);
+        });
     }
 
     @Override
     public Long count() {
-        return getEntityManager().createQuery("SELECT COUNT(e) FROM " + persistentClass.getSimpleName() + " e", Long.class).getSingleResult();
+        return routed(Collections.emptyMap(),
+                () -> timed("count", getEntityManager().createQuery("SELECT COUNT(e) FROM " + persistentClass.getSimpleName() + " e", Long.class)::getSingleResult),
+                AbstractDAO::sum);
     }
 
     @Override
     public Long getCountByCriteria(Map<String, Object> criteria) {
-        EntityManager em = getEntityManager();
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Long> selectQuery = cb.createQuery(Long.class);
-        Root<T> rootEntity = selectQuery.from(getPersistentClass());
-        List<Predicate> predicates = getPredicatesList(cb, rootEntity, criteria);
-        selectQuery.select(cb.count(rootEntity)).where(predicates.toArray(new Predicate[0]));
-        return em.createQuery(selectQuery).getSingleResult();
+        String jpql = getCachedQuery("SELECT COUNT(e)", getPersistentClass(), criteria, null, "");
+        return routed(criteria, () -> {
+            TypedQuery<Long> query = getEntityManager().createQuery(jpql, Long.class);
+            addParametersToQuery(query, criteria);
+            return timed("getCountByCriteria", criteria, query::getSingleResult);
+        }, AbstractDAO::sum);
     }
 
     @Override
-    public Optional<T> getById(Object id) {
-        EntityManager em = getEntityManager();
-        return Optional.ofNullable(em.find(persistentClass, id));
+    public Long getCappedCountByCriteria(Map<String, Object> criteria, int cap) {
+        // Reads at most cap + 1 ids instead of counting every match, a result above cap means "more than cap"
+        String jpql = getCachedQuery("SELECT e.id", getPersistentClass(), criteria, null, "");
+        return routed(criteria, () -> {
+            TypedQuery<Object> query = getEntityManager().createQuery(jpql, Object.class);
+            addParametersToQuery(query, criteria);
+            query.setMaxResults(cap + 1);
+            return timed("getCappedCountByCriteria", criteria, () -> (long) query.getResultList().size());
+        }, counts -> Math.min(sum(counts), cap + 1L));
+    }
+
+    @Override
+    public Object[] getCountAndLastModifiedByCriteria(Map<String, Object> criteria) {
+        // Validator metadata only (AbstractEntity.updatedAt), never the rows themselves
+        String jpql = getCachedQuery("SELECT COUNT(e), MAX(e.updatedAt)", getPersistentClass(), criteria, null, "");
+        return routed(criteria, () -> {
+            TypedQuery<Object[]> query = getEntityManager().createQuery(jpql, Object[].class);
+            addParametersToQuery(query, criteria);
+            return timed("getCountAndLastModifiedByCriteria", criteria, query::getSingleResult);
+        }, rows -> {
+            long count = 0;
+            LocalDateTime lastModified = null;
+            for (Object[] row : rows) {
+                count += ((Number) row[0]).longValue();
+                if (row[1] instanceof LocalDateTime modified && (lastModified == null || modified.isAfter(lastModified))) lastModified = modified;
+            }
+            return new Object[] {count, lastModified};
+        });
+    }
 
+    @Override
+    public Optional<T> getById(Object id) {
+        return JPAHelper.onShard(ShardRouter.shardForId(id), () -> {
+            EntityManager em = getEntityManager();
+            return timed("getById", id, () -> Optional.ofNullable(em.find(persistentClass, id)));
+        });
     }
 
     @Override
     public Optional<T> findByField(String fieldName, Object value) {
-        String sql = "SELECT e FROM " + persistentClass.getSimpleName() + " e WHERE e." + fieldName + ":= value";
-        TypedQuery<T> query = getEntityManager().createQuery(sql, persistentClass);
-        query.setParameter("value", value);
-        return query.getResultList().stream().findFirst();
+        String jpql = queryCache.computeIfAbsent("findByField|" + persistentClass.getName() + "|" + fieldName,
+                key -> "SELECT e FROM " + persistentClass.getSimpleName() + " e WHERE e." + fieldName + " = :value");
+        return routed(Collections.singletonMap(fieldName, value), () -> {
+            TypedQuery<T> query = getEntityManager().createQuery(jpql, persistentClass);
+            query.setParameter("value", value);
+            query.setMaxResults(1);
+            return timed("findByField", Collections.singletonMap(fieldName, value), query::getResultList).stream().findFirst();
+        }, found -> found.stream().flatMap(Optional::stream).findFirst());
     }
 
     @Override
@@ -89,111 +220,436 @@ public abstract class AbstractDAO<T extends IdentifiableEntity> implements IGene
 
     @Override
     public <K extends T> List<K> getByCriteria(Class<K> clazz, Map<String, Object> criteria) {
-        TypedQuery<K> query = getByCriteriaQuery(clazz, criteria);
-        return query.getResultList();
+        return routed(criteria, () -> {
+            TypedQuery<K> query = getByCriteriaQuery(clazz, criteria);
+            return timed("getByCriteria", criteria, query::getResultList);
+        }, AbstractDAO::concat);
     }
 
     @Override
     public <K extends T> List<K> getByCriteriaPaginated(Class<K> clazz, Map<String, Object> criteria, Integer page, Integer size) {
-        TypedQuery<K> query = getByCriteriaQuery(clazz, criteria);
-        if (page != null && size != null) {
-            query.setFirstResult(page * size);      // skip
-            query.setMaxResults(size);
+        Integer shard = shardOf(criteria);
+        if (shard != null || page == null || size == null) {
+            return routed(criteria, () -> {
+                TypedQuery<K> query = getByCriteriaQuery(clazz, criteria);
+                if (page != null && size != null) {
+                    query.setFirstResult(offset(page, size));      // skip
+                    query.setMaxResults(size);
+                }
+                return timed("getByCriteriaPaginated", criteria, query::getResultList);
+            }, AbstractDAO::concat);
         }
-        return query.getResultList();
+        // Every shard returns its first (page + 1) * size rows by id, the page is cut from their merge
+        String jpql = getCachedQuery("SELECT e", clazz, criteria, null, " ORDER BY e.id");
+        int shardRows = scatterRows(page, size);
+        List<List<K>> perShard = JPAHelper.onAllShards(() -> {
+            TypedQuery<K> query = getEntityManager().createQuery(jpql, clazz);
+            addParametersToQuery(query, criteria);
+            query.setMaxResults(shardRows);
+            return timed("getByCriteriaPaginated", criteria, query::getResultList);
+        });
+        return mergeSorted(perShard, Comparator.comparing(IdentifiableEntity::getId), offset(page, size), size);
     }
 
-    protected static EntityManager getEntityManager() {
-        return JPAHelper.getEntityManager();
+    @Override
+    public <K extends T> List<K> getByCriteriaKeyset(Class<K> clazz, Map<String, Object> criteria, String sortField, Object afterSortValue, Object afterId, Integer size) {
+        String seekCondition;
+        String orderBy;
+        boolean seek;
+        if (sortField == null) {
+            // Seek on id only: WHERE id > :keysetId ORDER BY id
+            seek = afterId != null;
+            seekCondition = seek ? "e.id > :keysetId" : null;
+            orderBy = " ORDER BY e.id";
+        } else {
+            // Seek on (sortField, id) with nulls first, as MySQL and H2 sort them anyway. After a non-null value the
+            // redundant '>=' keeps the (sortField, id) index usable for the range scan and already excludes the nulls;
+            // after a null the rest of the nulls come first, then every non-null value.
+            seek = afterId != null;
+            if (!seek) {
+                seekCondition = null;
+            } else if (afterSortValue == null) {
+                seekCondition = "((e." + sortField + " IS NULL AND e.id > :keysetId) OR e." + sortField + " IS NOT NULL)";
+            } else {
+                seekCondition = "e." + sortField + " >= :keysetSort AND (e." + sortField + " > :keysetSort OR e.id > :keysetId)";
+            }
+            orderBy = " ORDER BY e." + sortField + " NULLS FIRST, e.id";
+        }
+
+        String jpql = getCachedQuery("SELECT e", clazz, criteria, seekCondition, orderBy);
+        return routed(criteria, () -> {
+            TypedQuery<K> query = getEntityManager().createQuery(jpql, clazz);
+            addParametersToQuery(query, criteria);
+            if (seek) {
+                query.setParameter("keysetId", afterId);
+                if (sortField != null && afterSortValue != null) query.setParameter("keysetSort", afterSortValue);
+            }
+            if (size != null) {
+                query.setMaxResults(size);
+            }
+            return timed("getByCriteriaKeyset", criteria, query::getResultList);
+        }, perShard -> mergeSorted(perShard, sortField == null ? Comparator.comparing(IdentifiableEntity::getId)
+                : Comparator.<K, Object>comparing(entity -> readField(entity, sortField), sortValueOrder(JPAHelper.textOrder(getEntityManager())))
+                        .thenComparing(IdentifiableEntity::getId), 0, size));
+    }
+
+    @Override
+    public <R> Optional<R> getProjectionById(Class<R> projectionClass, List<String> fields, Object id) {
+        return getProjectionByCriteriaPaginated(projectionClass, fields, Map.of("id", id), 0, 1).stream().findFirst();
+    }
+
+    @Override
+    public <R> List<R> getProjectionByCriteria(Class<R> projectionClass, List<String> fields, Map<String, Object> criteria) {
+        return getProjectionByCriteriaPaginated(projectionClass, fields, criteria, null, null);
+    }
+
+    @Override
+    public <R> List<R> getProjectionByCriteriaPaginated(Class<R> projectionClass, List<String> fields, Map<String, Object> criteria, Integer page, Integer size) {
+        // Constructor expression: rows go straight into the DTO, no managed entity and no dirty-checking snapshot
+        String select = "SELECT new " + projectionClass.getName() + "(e." + String.join(", e.", fields) + ")";
+        boolean paged = page != null && size != null;
+        String jpql = getCachedQuery(select, getPersistentClass(), criteria, null, paged ? " ORDER BY e.id" : "");
+        Integer shard = shardOf(criteria);
+        if (shard != null || !paged) {
+            return routed(criteria, () -> {
+                TypedQuery<R> query = getEntityManager().createQuery(jpql, projectionClass);
+                addParametersToQuery(query, criteria);
+                if (paged) {
+                    query.setFirstResult(offset(page, size));      // skip
+                    query.setMaxResults(size);
+                }
+                return timed("getProjectionByCriteria", criteria, query::getResultList);
+            }, AbstractDAO::concat);
+        }
+        int shardRows = scatterRows(page, size);
+        List<List<R>> perShard = JPAHelper.onAllShards(() -> {
+            TypedQuery<R> query = getEntityManager().createQuery(jpql, projectionClass);
+            addParametersToQuery(query, criteria);
+            query.setMaxResults(shardRows);
+            return timed("getProjectionByCriteria", criteria, query::getResultList);
+        });
+        return mergeSorted(perShard, projectionIdOrder(projectionClass, fields), offset(page, size), size);
+    }
+
+    @Override
+    public List<Object[]> getFieldsByCriteriaPaginatedWithTotal(List<String> fields, Map<String, Object> criteria, Integer page, Integer size) {
+        // The window count is evaluated before OFFSET/LIMIT, so every row carries the total of the whole filter
+        // and the page plus its total come back in one round trip. The total is the last column of each row.
+        String select = "SELECT e." + String.join(", e.", fields) + ", COUNT(*) OVER ()";
+        String jpql = getCachedQuery(select, getPersistentClass(), criteria, null, " ORDER BY e.id");
+        Integer shard = shardOf(criteria);
+        if (shard != null) {
+            return JPAHelper.onShard(shard, () -> {
+                TypedQuery<Object[]> query = getEntityManager().createQuery(jpql, Object[].class);
+                addParametersToQuery(query, criteria);
+                query.setFirstResult(offset(page, size));      // skip
+                query.setMaxResults(size);
+                return timed("getFieldsByCriteriaPaginatedWithTotal", criteria, query::getResultList);
+            });
+        }
+        // A shard that returns no rows from offset 0 has no matches, otherwise its rows carry its own total
+        int shardRows = scatterRows(page, size);
+        List<List<Object[]>> perShard = JPAHelper.onAllShards(() -> {
+            TypedQuery<Object[]> query = getEntityManager().createQuery(jpql, Object[].class);
+            addParametersToQuery(query, criteria);
+            query.setMaxResults(shardRows);
+            return timed("getFieldsByCriteriaPaginatedWithTotal", criteria, query::getResultList);
+        });
+        int totalColumn = fields.size();
+        long total = perShard.stream().filter(rows -> !rows.isEmpty())
+                .mapToLong(rows -> ((Number) rows.get(0)[totalColumn]).longValue()).sum();
+        int idColumn = requireIdField(fields);
+        List<Object[]> rows = mergeSorted(perShard, Comparator.comparing(row -> (Long) row[idColumn]), offset(page, size), size);
+        rows.forEach(row -> row[totalColumn] = total);
+        return rows;
     }
 
+    @Override
     @SuppressWarnings("unchecked")
-    protected <K extends T> List<Predicate> getPredicatesList(CriteriaBuilder builder, Root<K> entityRoot, Map<String, Object> criteria) {
-        List<Predicate> predicates = new ArrayList<>();
+    public <K extends T> void forEachByCriteria(Class<K> clazz, Map<String, Object> criteria, int fetchSize, Consumer<? super K> action) {
+        Integer shard = shardOf(criteria);
+        List<Integer> shards = new ArrayList<>();
+        if (shard != null) shards.add(shard); else for (int i = 0; i < ShardRouter.shardCount(); i++) shards.add(i);
 
-        for (Map.Entry<String, Object> entry : criteria.entrySet()) {
-            String key = entry.getKey();
-            Object value = entry.getValue();
+        String jpql = getCachedQuery("SELECT e", clazz, criteria, null, " ORDER BY e.id");
+        List<EntityManager> ems = new ArrayList<>();
+        List<ScrollableResults<K>> cursors = new ArrayList<>();
+        try {
+            for (int target : shards) {
+                JPAHelper.onShard(target, () -> {
+                    EntityManager em = getEntityManager();
+                    TypedQuery<K> typedQuery = em.createQuery(jpql, clazz);
+                    addParametersToQuery(typedQuery, criteria);
+
+                    Query<K> query = typedQuery.unwrap(Query.class);
+                    query.setFetchSize(JPAHelper.streamingFetchSize(em, fetchSize));
+                    query.setReadOnly(true);
+                    query.setCacheMode(CacheMode.IGNORE);
+                    ems.add(em);
+                    cursors.add(query.scroll(ScrollMode.FORWARD_ONLY));
+                    return null;
+                });
+            }
 
-            // Handling the cases where the value is a List, Map or a "isNull" condition
-            if (value instanceof List) {
-                Path<?> path = resolvePath(entityRoot, key);
-                CriteriaBuilder.In<Object> inClause = builder.in(path);
-                for (Object v : (List<?>) value) {
-                    inClause.value(v);
+            // Forward-only cursors (one per shard, merged by id), detaching every fetchSize rows of a shard
+            // so no persistence context ever grows
+            Object[] heads = new Object[cursors.size()];
+            int[] processed = new int[cursors.size()];
+            PriorityQueue<Integer> next = new PriorityQueue<>(Comparator.comparing(i -> ((K) heads[i]).getId()));
+            for (int i = 0; i < cursors.size(); i++) {
+                if (cursors.get(i).next()) {
+                    heads[i] = cursors.get(i).get();
+                    next.add(i);
                 }
-                predicates.add(inClause);
-            } else if (value instanceof Map) {
-                // For 'BETWEEN' condition
-                Map<String, Object> mapValue = (Map<String, Object>) value;
-                if (mapValue.containsKey("from") && mapValue.containsKey("to")) {
-                    Object from = mapValue.get("from");
-                    Object to = mapValue.get("to");
-
-                    if (from instanceof Comparable && to instanceof Comparable) {
-                        Expression<? extends Comparable<Object>> path =
-                                (Expression<? extends Comparable<Object>>) resolvePath(entityRoot, key);
-
-                        predicates.add(builder.between(path, (Comparable<Object>) from, (Comparable<Object>) to));
-                    }
+            }
+            while (!next.isEmpty()) {
+                int i = next.poll();
+                action.accept((K) heads[i]);
+                if (++processed[i] % fetchSize == 0) {
+                    ems.get(i).clear();
+                }
+                if (cursors.get(i).next()) {
+                    heads[i] = cursors.get(i).get();
+                    next.add(i);
                 }
-            } else if ("isNull".equals(value)) {
-                // For 'IS NULL' condition
-                predicates.add(builder.isNull(resolvePath(entityRoot, key)));
-            } else if ("isNotNull".equals(value)) {
-                // For 'IS NOT NULL' condition
-                predicates.add(builder.isNotNull(resolvePath(entityRoot, key)));
-            } else if (value instanceof String && ((String) value).contains("%")) {
-                // Treat as LIKE pattern (e.g., "Jo%")
-                predicates.add(
-                        builder.like(
-                                builder.lower((Expression<String>) resolvePath(entityRoot, key)),
-                                ((String) value).toLowerCase()
-                        ));
-            } else {
-                // For '=' condition (default case)
-                predicates.add(builder.equal(resolvePath(entityRoot, key), value));
             }
+        } finally {
+            cursors.forEach(ScrollableResults::close);
+        }
+    }
+
+    protected <R> R timed(String operation, Supplier<R> query) {
+        return timed(operation, null, query);
+    }
+
+    // The parameters end up in the slow-query log next to the SQL, which only shows placeholders
+    protected <R> R timed(String operation, Object parameters, Supplier<R> query) {
+        long start = System.nanoTime();
+        try {
+            return QueryDiagnostics.withContext(persistentClass.getSimpleName() + "." + operation, parameters, query);
+        } finally {
+            queryTimers.computeIfAbsent(operation, op -> MetricsRegistry.histogram("dao_query_seconds", "DAO query execution time",
+                            MetricsRegistry.labels("entity", persistentClass.getSimpleName(), "operation", op)))
+                    .observeNanos(System.nanoTime() - start);
+        }
+    }
+
+    protected static EntityManager getEntityManager() {
+        return JPAHelper.getEntityManager();
+    }
+
+    // The shard the criteria pin down (an id, or an exact shard key), null when every shard has to be asked
+    protected Integer shardOf(Map<String, Object> criteria) {
+        if (!ShardRouter.isSharded()) return 0;
+        if (criteria.get("id") instanceof Number id) return ShardRouter.shardForId(id);
+        Object shardKey = shardKeyField == null ? null : criteria.get(shardKeyField);
+        if (shardKey != null && getOperator(shardKey) == Operator.EQUAL) return ShardRouter.shardForKey(shardKey);
+        return null;
+    }
+
+    // New rows go to the shard of their shard key; entities without one (a tombstone) follow the id they were given
+    private int shardOf(T entity) {
+        if (!ShardRouter.isSharded()) return 0;
+        return shardKeyField == null ? ShardRouter.shardForId(entity.getId()) : ShardRouter.shardForKey(readField(entity, shardKeyField));
+    }
+
+    // Runs the query on the shard the criteria pin down, otherwise on every shard in parallel and merges the results
+    private <R> R routed(Map<String, Object> criteria, Supplier<R> query, Function<List<R>, R> merge) {
+        Integer shard = shardOf(criteria);
+        return shard != null ? JPAHelper.onShard(shard, query) : merge.apply(JPAHelper.onAllShards(query));
+    }
+
+    private static Long sum(List<Long> counts) {
+        return counts.stream().mapToLong(Long::longValue).sum();
+    }
+
+    private static <R> List<R> concat(List<List<R>> lists) {
+        List<R> all = new ArrayList<>();
+        lists.forEach(all::addAll);
+        return all;
+    }
+
+    // A scatter-gather page makes every shard return all of its rows up to the end of the page, any of them may
+    // belong on it. Deeper pages are refused instead of materializing that many rows per shard; the keyset
+    // cursor has no such limit.
+    private static int scatterRows(int page, int size) {
+        int rows;
+        try {
+            rows = Math.multiplyExact(Math.addExact(page, 1), size);
+        } catch (ArithmeticException e) {
+            rows = Integer.MAX_VALUE;
+        }
+        if (rows > MAX_SCATTER_ROWS) {
+            throw new IllegalArgumentException("Page " + page + " of size " + size + " ends past row " + MAX_SCATTER_ROWS
+                    + ", use the cursor to page further");
         }
-        return predicates;
+        return rows;
     }
 
-    protected Path<?> resolvePath(Root<? extends T> root, String expression) {
-        String[] fields = expression.split("\\.");
-        Path<?> path = root.get(fields[0]);
-        for (int i = 1; i < fields.length; i++) {
-            path = path.get(fields[i]);
+    private static int offset(int page, int size) {
+        try {
+            return Math.multiplyExact(page, size);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Page " + page + " of size " + size + " is out of range");
+        }
+    }
+
+    // Keyset pages from the shards are merged in the order the database sorted them: nulls first, text by its collation
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Object> sortValueOrder(Comparator<String> textOrder) {
+        return Comparator.nullsFirst((a, b) -> a instanceof String left && b instanceof String right
+                ? textOrder.compare(left, right) : ((Comparable) a).compareTo(b));
+    }
+
+    // k-way merge of lists each already sorted by order, skipping the first skip elements of the merged sequence
+    private static <R> List<R> mergeSorted(List<List<R>> sortedLists, Comparator<? super R> order, int skip, Integer limit) {
+        List<Iterator<R>> iterators = new ArrayList<>();
+        List<R> heads = new ArrayList<>();
+        PriorityQueue<Integer> next = new PriorityQueue<>((a, b) -> order.compare(heads.get(a), heads.get(b)));
+        for (List<R> list : sortedLists) {
+            Iterator<R> iterator = list.iterator();
+            iterators.add(iterator);
+            heads.add(iterator.hasNext() ? iterator.next() : null);
+            if (heads.get(heads.size() - 1) != null) next.add(heads.size() - 1);
+        }
+        List<R> merged = new ArrayList<>();
+        int skipped = 0;
+        while (!next.isEmpty() && (limit == null || merged.size() < limit)) {
+            int i = next.poll();
+            if (skipped < skip) skipped++; else merged.add(heads.get(i));
+            if (iterators.get(i).hasNext()) {
+                heads.set(i, iterators.get(i).next());
+                next.add(i);
+            }
+        }
+        return merged;
+    }
+
+    // Projections are records whose components follow the selected fields, so the id is the component at its index
+    private static <R> Comparator<R> projectionIdOrder(Class<R> projectionClass, List<String> fields) {
+        int idIndex = requireIdField(fields);
+        if (!projectionClass.isRecord()) {
+            throw new IllegalArgumentException("Merging paginated projections across shards needs a record, got " + projectionClass.getName());
+        }
+        Method accessor = projectionClass.getRecordComponents()[idIndex].getAccessor();
+        return Comparator.comparing(projection -> {
+            try {
+                return (Long) accessor.invoke(projection);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static int requireIdField(List<String> fields) {
+        int idIndex = fields.indexOf("id");
+        if (idIndex < 0) throw new IllegalArgumentException("Merging pages across shards needs the id among the fields " + fields);
+        return idIndex;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> V readField(Object entity, String name) {
+        Field field = fieldCache.computeIfAbsent(name, n -> {
+            for (Class<?> type = persistentClass; type != null; type = type.getSuperclass()) {
+                try {
+                    Field found = type.getDeclaredField(n);
+                    found.setAccessible(true);
+                    return found;
+                } catch (NoSuchFieldException e) {
+                    // keep looking in the superclass
+                }
+            }
+            throw new IllegalArgumentException("No field " + n + " in " + persistentClass.getName());
+        });
+        try {
+            return (V) field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
         }
-        return path;
     }
 
     protected String buildParameterAlias(String malformedAlias) {
         return malformedAlias.replaceAll("\\.", "");
     }
 
-    protected void addParametersToQuery(TypedQuery<? extends T> query, Map<String, Object> criteria) {
+    @SuppressWarnings("unchecked")
+    protected void addParametersToQuery(jakarta.persistence.Query query, Map<String, Object> criteria) {
         for (Map.Entry<String, Object> entry : criteria.entrySet()) {
+            String alias = buildParameterAlias(entry.getKey());
             Object value = entry.getValue();
-            if (value instanceof List || value instanceof Map) {
-                // Handle complex cases like IN or BETWEEN that need special parameter setting
-                // (    Do not add % for LIKE here)
-                query.setParameter(buildParameterAlias(entry.getKey()), value);
-            } else {
-                // Adding '%' for LIKE operations if needed
-                query.setParameter(buildParameterAlias(entry.getKey()) , value + "%");
+            switch (getOperator(value)) {
+                case EQUAL, IN -> query.setParameter(alias, value);
+                case LIKE -> query.setParameter(alias, ((String) value).toLowerCase());
+                case BETWEEN -> {
+                    Map<String, Object> mapValue = (Map<String, Object>) value;
+                    query.setParameter(alias + "From", mapValue.get("from"));
+                    query.setParameter(alias + "To", mapValue.get("to"));
+                }
+                default -> {
+                    // IS NULL, IS NOT NULL and empty IN lists have nothing to bind
+                }
             }
         }
     }
 
     protected <K extends T> TypedQuery<K> getByCriteriaQuery(Class<K> clazz, Map<String, Object> criteria) {
-        EntityManager em = getEntityManager();
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<K> selectQuery = cb.createQuery(clazz);
-        Root<K> entityRoot = selectQuery.from(clazz);
-        List<Predicate> predicates = getPredicatesList(cb, entityRoot, criteria);
-        selectQuery.select(entityRoot).where(predicates.toArray(new Predicate[0]));
-        TypedQuery<K> query = em.createQuery(selectQuery);
+        String jpql = getCachedQuery("SELECT e", clazz, criteria, null, "");
+        TypedQuery<K> query = getEntityManager().createQuery(jpql, clazz);
         addParametersToQuery(query, criteria);
         return query;
     }
+
+    protected String getCachedQuery(String select, Class<?> clazz, Map<String, Object> criteria, String extraCondition, String suffix) {
+        String cacheKey = select + "|" + clazz.getName() + "|" + getQueryShape(criteria) + "|" + extraCondition + "|" + suffix;
+        return queryCache.computeIfAbsent(cacheKey,
+                key -> select + " FROM " + clazz.getSimpleName() + " e" + buildWhereClause(criteria, extraCondition) + suffix);
+    }
+
+    protected String getQueryShape(Map<String, Object> criteria) {
+        StringBuilder shape = new StringBuilder();
+        for (String key : new TreeSet<>(criteria.keySet())) {
+            shape.append(key).append('=').append(getOperator(criteria.get(key))).append(';');
+        }
+        return shape.toString();
+    }
+
+    private String buildWhereClause(Map<String, Object> criteria, String extraCondition) {
+        List<String> conditions = new ArrayList<>();
+        for (String key : new TreeSet<>(criteria.keySet())) {
+            String path = "e." + key;
+            String parameter = ":" + buildParameterAlias(key);
+            switch (getOperator(criteria.get(key))) {
+                case EQUAL -> conditions.add(path + " = " + parameter);
+                case LIKE -> conditions.add("lower(" + path + ") LIKE " + parameter);
+                case IN -> conditions.add(path + " IN " + parameter);
+                case IN_EMPTY -> conditions.add("1 = 0");
+                case BETWEEN -> conditions.add(path + " BETWEEN " + parameter + "From AND " + parameter + "To");
+                case IS_NULL -> conditions.add(path + " IS NULL");
+                case IS_NOT_NULL -> conditions.add(path + " IS NOT NULL");
+                case IGNORED -> {
+                    // BETWEEN without comparable bounds is skipped
+                }
+            }
+        }
+        if (extraCondition != null) {
+            conditions.add(extraCondition);
+        }
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private static Operator getOperator(Object value) {
+        if (value instanceof List<?> list) {
+            return list.isEmpty() ? Operator.IN_EMPTY : Operator.IN;
+        } else if (value instanceof Map<?, ?> mapValue) {
+            return mapValue.get("from") instanceof Comparable && mapValue.get("to") instanceof Comparable
+                    ? Operator.BETWEEN : Operator.IGNORED;
+        } else if ("isNull".equals(value)) {
+            return Operator.IS_NULL;
+        } else if ("isNotNull".equals(value)) {
+            return Operator.IS_NOT_NULL;
+        } else if (value instanceof String && ((String) value).contains("%")) {
+            return Operator.LIKE;
+        }
+        return Operator.EQUAL;
+    }
 }
@@ -1,19 +1,33 @@
 package gr.aueb.cf.schoolapp.dao;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface IGenericDAO<T> {
     Optional<T> insert(T t);
+    List<T> insertAll(List<T> entities, int batchSize);
     Optional<T> update(T t);
     void delete(Object id);
+    boolean isShardKeyCompatible(Object id, Object shardKey);
+    int updateFieldsByIdAndVersion(Object id, Long version, Map<String, Object> fields, LocalDateTime updatedAt);
+    int deleteByIdAndVersion(Object id, Long version);
     Long count();
     Long getCountByCriteria(Map<String, Object> criteria);
+    Long getCappedCountByCriteria(Map<String, Object> criteria, int cap);
+    Object[] getCountAndLastModifiedByCriteria(Map<String, Object> criteria);
     Optional<T> getById(Object id);
     Optional<T> findByField(String fieldName, Object value);
     List<T> getAll();
     List<? extends T> getByCriteria(Map<String, Object> criteria);
     <K extends T> List<K> getByCriteria(Class<K> clazz, Map<String, Object> criteria);
     <K extends T> List<K> getByCriteriaPaginated(Class<K> clazz, Map<String, Object> criteria, Integer page, Integer size);
+    <K extends T> List<K> getByCriteriaKeyset(Class<K> clazz, Map<String, Object> criteria, String sortField, Object afterSortValue, Object afterId, Integer size);
+    <R> Optional<R> getProjectionById(Class<R> projectionClass, List<String> fields, Object id);
+    <R> List<R> getProjectionByCriteria(Class<R> projectionClass, List<String> fields, Map<String, Object> criteria);
+    <R> List<R> getProjectionByCriteriaPaginated(Class<R> projectionClass, List<String> fields, Map<String, Object> criteria, Integer page, Integer size);
+    List<Object[]> getFieldsByCriteriaPaginatedWithTotal(List<String> fields, Map<String, Object> criteria, Integer page, Integer size);
+    <K extends T> void forEachByCriteria(Class<K> clazz, Map<String, Object> criteria, int fetchSize, Consumer<? super K> action);
 }
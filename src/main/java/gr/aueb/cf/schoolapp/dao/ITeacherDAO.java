@@ -2,8 +2,11 @@ package gr.aueb.cf.schoolapp.dao;
 
 import gr.aueb.cf.schoolapp.model.Teacher;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ITeacherDAO extends IGenericDAO<Teacher> {
     Optional<Teacher> getByVat(String vat);
+    List<String> getExistingVats(Collection<String> vats);
 }
@@ -0,0 +1,9 @@
+package gr.aueb.cf.schoolapp.dao;
+
+import gr.aueb.cf.schoolapp.model.TeacherTombstone;
+
+import java.time.LocalDateTime;
+
+public interface ITeacherTombstoneDAO extends IGenericDAO<TeacherTombstone> {
+    int deleteDeletedBefore(LocalDateTime cutoff);
+}
@@ -1,19 +1,40 @@
 package gr.aueb.cf.schoolapp.dao;
 
 import gr.aueb.cf.schoolapp.model.Teacher;
+import gr.aueb.cf.schoolapp.service.util.JPAHelper;
+import gr.aueb.cf.schoolapp.service.util.ShardRouter;
 import jakarta.enterprise.context.ApplicationScoped;
 
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class TeacherDAOImpl extends AbstractDAO<Teacher> implements ITeacherDAO {
     public TeacherDAOImpl() {
         this.setPersistentClass(Teacher.class);
+        this.setShardKeyField("vat");
     }
 
     @Override
     public Optional<Teacher> getByVat(String vat) {
         return this.findByField("vat", vat);
     }
+
+    @Override
+    public List<String> getExistingVats(Collection<String> vats) {
+        if (vats.isEmpty()) return List.of();
+        // Each vat can only exist on its own shard, so every shard is asked about its own vats only
+        Map<Integer, List<String>> vatsByShard = vats.stream().collect(Collectors.groupingBy(ShardRouter::shardForKey));
+        List<String> existing = new ArrayList<>();
+        vatsByShard.forEach((shard, shardVats) -> existing.addAll(JPAHelper.onShard(shard, () -> timed("getExistingVats", shardVats,
+                getEntityManager()
+                        .createQuery("SELECT e.vat FROM Teacher e WHERE e.vat IN :vats", String.class)
+                        .setParameter("vats", shardVats)::getResultList))));
+        return existing;
+    }
 }
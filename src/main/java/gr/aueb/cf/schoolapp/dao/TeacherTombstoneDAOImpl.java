@@ -0,0 +1,23 @@
+package gr.aueb.cf.schoolapp.dao;
+
+import gr.aueb.cf.schoolapp.model.TeacherTombstone;
+import gr.aueb.cf.schoolapp.service.util.JPAHelper;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.LocalDateTime;
+
+@ApplicationScoped
+public class TeacherTombstoneDAOImpl extends AbstractDAO<TeacherTombstone> implements ITeacherTombstoneDAO {
+    public TeacherTombstoneDAOImpl() {
+        this.setPersistentClass(TeacherTombstone.class);
+    }
+
+    // Tombstones follow the id of their teacher, so every shard holds some
+    @Override
+    public int deleteDeletedBefore(LocalDateTime cutoff) {
+        return JPAHelper.onAllShards(() -> timed("deleteDeletedBefore", cutoff, getEntityManager()
+                        .createQuery("DELETE FROM TeacherTombstone e WHERE e.deletedAt < :cutoff")
+                        .setParameter("cutoff", cutoff)::executeUpdate))
+                .stream().mapToInt(Integer::intValue).sum();
+    }
+}
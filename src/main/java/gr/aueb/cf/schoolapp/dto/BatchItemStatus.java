@@ -0,0 +1,7 @@
+package gr.aueb.cf.schoolapp.dto;
+
+public enum BatchItemStatus {
+    CREATED,
+    INVALID,
+    DUPLICATE
+}
@@ -0,0 +1,3 @@
+package gr.aueb.cf.schoolapp.dto;
+
+public record BootPhaseDTO(String name, long millis) {}
@@ -0,0 +1,10 @@
+package gr.aueb.cf.schoolapp.dto;
+
+public record CacheStatsDTO(
+        String name,
+        long hits,
+        long misses,
+        long evictions,
+        int size,
+        int maxSize
+) {}
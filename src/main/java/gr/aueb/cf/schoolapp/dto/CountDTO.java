@@ -0,0 +1,6 @@
+package gr.aueb.cf.schoolapp.dto;
+
+public record CountDTO(
+        long count,
+        boolean approximate
+) {}
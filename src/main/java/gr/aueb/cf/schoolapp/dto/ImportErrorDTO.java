@@ -0,0 +1,4 @@
+package gr.aueb.cf.schoolapp.dto;
+
+// row is the line number in the uploaded file
+public record ImportErrorDTO(long row, String vat, String message) {}
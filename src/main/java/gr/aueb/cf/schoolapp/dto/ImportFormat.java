@@ -0,0 +1,6 @@
+package gr.aueb.cf.schoolapp.dto;
+
+public enum ImportFormat {
+    CSV,
+    NDJSON
+}
@@ -0,0 +1,18 @@
+package gr.aueb.cf.schoolapp.dto;
+
+import java.util.List;
+
+public record ImportJobDTO(
+        String id,
+        ImportJobStatus status,
+        ImportFormat format,
+        long rowsRead,
+        long rowsInserted,
+        long rowsDuplicate,
+        long rowsInvalid,
+        long elapsedMillis,
+        double rowsPerSecond,
+        List<ImportErrorDTO> errors,
+        boolean errorsTruncated,
+        String message
+) {}
@@ -0,0 +1,10 @@
+package gr.aueb.cf.schoolapp.dto;
+
+public enum ImportJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    // Stopped by an error after some chunks were committed, rowsInserted of them stay imported
+    PARTIALLY_IMPORTED,
+    FAILED
+}
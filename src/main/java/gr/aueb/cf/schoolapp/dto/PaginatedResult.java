@@ -7,6 +7,21 @@ public record PaginatedResult<T>(
         int currentPage,
         int pageSize,
         int totalPages,
-        long totalItems
+        long totalItems,
+        String nextCursor,
+        boolean totalApproximate
 ) {
+    public PaginatedResult(List<T> data, int currentPage, int pageSize, int totalPages, long totalItems) {
+        this(data, currentPage, pageSize, totalPages, totalItems, null, false);
+    }
+
+    // An approximate total is a lower bound (a capped count), so totalPages is one too
+    public PaginatedResult(List<T> data, int currentPage, int pageSize, CountDTO total) {
+        this(data, currentPage, pageSize, (int) ((total.count() + pageSize - 1) / pageSize), total.count(), null, total.approximate());
+    }
+
+    // Cursor pages do not know their position or the total, only where the next page starts
+    public static <T> PaginatedResult<T> ofCursor(List<T> data, int pageSize, String nextCursor) {
+        return new PaginatedResult<>(data, -1, pageSize, -1, -1, nextCursor, false);
+    }
 }
@@ -0,0 +1,3 @@
+package gr.aueb.cf.schoolapp.dto;
+
+public record QueryBudgetViolationDTO(String at, String route, int statements, String mostRepeatedSql, int mostRepeatedCount) {}
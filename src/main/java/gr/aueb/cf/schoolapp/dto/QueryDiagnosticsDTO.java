@@ -0,0 +1,11 @@
+package gr.aueb.cf.schoolapp.dto;
+
+import java.util.List;
+
+public record QueryDiagnosticsDTO(
+        long slowQueryThresholdMillis,
+        int queryBudget,
+        List<RouteQueryStatsDTO> routes,
+        List<SlowQueryDTO> slowQueries,
+        List<QueryBudgetViolationDTO> budgetViolations
+) {}
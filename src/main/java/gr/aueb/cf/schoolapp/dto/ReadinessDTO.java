@@ -0,0 +1,5 @@
+package gr.aueb.cf.schoolapp.dto;
+
+import java.util.List;
+
+public record ReadinessDTO(String status, List<BootPhaseDTO> phases, long totalMillis, String message) {}
@@ -0,0 +1,8 @@
+package gr.aueb.cf.schoolapp.dto;
+
+import java.time.LocalDateTime;
+
+public record ResourceVersionDTO(
+        long count,
+        LocalDateTime lastModified
+) {}
@@ -0,0 +1,11 @@
+package gr.aueb.cf.schoolapp.dto;
+
+public record RouteQueryStatsDTO(
+        String route,
+        long requests,
+        long statements,
+        long maxStatements,
+        double statementsPerRequest,
+        double statementMillisPerRequest,
+        long budgetViolations
+) {}
@@ -0,0 +1,4 @@
+package gr.aueb.cf.schoolapp.dto;
+
+// context is the DAO operation and the criteria it bound, when the statement came from one
+public record SlowQueryDTO(String at, String route, String sql, String context, double millis) {}
@@ -0,0 +1,9 @@
+package gr.aueb.cf.schoolapp.dto;
+
+public record TeacherBatchResultDTO(
+        int index,
+        String vat,
+        BatchItemStatus status,
+        TeacherReadOnlyDTO teacher,
+        String message
+) {}
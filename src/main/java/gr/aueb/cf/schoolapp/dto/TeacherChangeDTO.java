@@ -0,0 +1,10 @@
+package gr.aueb.cf.schoolapp.dto;
+
+// teacher is null for deletes; token resumes the change feed right after this change
+public record TeacherChangeDTO(
+        ChangeType type,
+        Long id,
+        TeacherReadOnlyDTO teacher,
+        String changedAt,
+        String token
+) {}
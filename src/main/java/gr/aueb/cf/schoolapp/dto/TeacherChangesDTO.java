@@ -0,0 +1,9 @@
+package gr.aueb.cf.schoolapp.dto;
+
+import java.util.List;
+
+public record TeacherChangesDTO(
+        List<TeacherChangeDTO> changes,
+        String nextToken,
+        boolean hasMore
+) {}
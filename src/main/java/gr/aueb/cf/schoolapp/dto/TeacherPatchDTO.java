@@ -0,0 +1,18 @@
+package gr.aueb.cf.schoolapp.dto;
+
+import jakarta.validation.constraints.Size;
+
+// Fields left null are not changed. Without a version the patch is unconditional (last writer wins).
+public record TeacherPatchDTO(
+
+        @Size(min = 2, max = 255, message = "Το όνομα πρέπει να είναι μεταξύ 2 - 255 χαρακτήρων")
+        String firstname,
+
+        @Size(min = 2, max = 255, message = "Το επώνυμο πρέπει να είναι μεταξύ 2 - 255 χαρακτήρων")
+        String lastname,
+
+        @Size(min = 9, max = 9, message = "Το ΑΦΜ πρέπει να είναι 9 χαρακτήρες")
+        String vat,
+
+        Long version
+) {}
@@ -1,4 +1,9 @@
 package gr.aueb.cf.schoolapp.dto;
 
-public record TeacherReadOnlyDTO(Long id, String firstname, String lastname, String vat) {}
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import java.time.LocalDateTime;
+
+// updatedAt travels with the row (into the cache too) for the Last-Modified validator, it is not part of the body
+public record TeacherReadOnlyDTO(Long id, String firstname, String lastname, String vat, Long version,
+                                 @JsonIgnore LocalDateTime updatedAt) {}
@@ -3,7 +3,7 @@ package gr.aueb.cf.schoolapp.dto;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 
-
+// Without a version the update is unconditional (last writer wins), like DELETE without ?version=
 public record TeacherUpdateDTO(
 
         @NotNull(message = "Το id δεν μπορεί να είναι κενό")
@@ -19,8 +19,8 @@ public record TeacherUpdateDTO(
 
         @NotNull(message = "Το ΑΦΜ δεν μπορεί να είναι κενό")
         @Size(min = 9, max = 9, message = "Το ΑΦΜ πρέπει να είναι 9 χαρακτήρες")
-        String vat
-
+        String vat,
 
+        Long version
 ) {}
 
@@ -6,12 +6,16 @@ import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
 import gr.aueb.cf.schoolapp.dto.TeacherUpdateDTO;
 import gr.aueb.cf.schoolapp.model.Teacher;
 
+import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 public class Mapper {
+    // Constructor order of TeacherReadOnlyDTO, used by the DAO projection queries
+    public static final List<String> TEACHER_READ_ONLY_FIELDS = List.of("id", "firstname", "lastname", "vat", "version", "updatedAt");
+
     private Mapper() {
 
     }
@@ -25,7 +29,12 @@ public class Mapper {
     }
 
     public static TeacherReadOnlyDTO mapToReadOnlyDTO(Teacher teacher) {
-        return new TeacherReadOnlyDTO(teacher.getId(), teacher.getFirstname(), teacher.getLastname(), teacher.getVat());
+        return new TeacherReadOnlyDTO(teacher.getId(), teacher.getFirstname(), teacher.getLastname(), teacher.getVat(), teacher.getVersion(), teacher.getUpdatedAt());
+    }
+
+    // Row laid out as TEACHER_READ_ONLY_FIELDS
+    public static TeacherReadOnlyDTO mapToReadOnlyDTO(Object[] row) {
+        return new TeacherReadOnlyDTO((Long) row[0], (String) row[1], (String) row[2], (String) row[3], (Long) row[4], (LocalDateTime) row[5]);
     }
 
     public static List<TeacherReadOnlyDTO> mapToTeacherReadOnlyDTOs(List<Teacher> teachers) {
@@ -0,0 +1,20 @@
+package gr.aueb.cf.schoolapp.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+// Id from a pooled sequence with the shard stamped into every value, see ShardedSequenceGenerator
+@IdGeneratorType(ShardedSequenceGenerator.class)
+@Retention(RUNTIME)
+@Target({FIELD, METHOD})
+public @interface ShardedSequence {
+    String name();
+
+    int allocationSize() default 50;
+}
@@ -0,0 +1,42 @@
+package gr.aueb.cf.schoolapp.model;
+
+import gr.aueb.cf.schoolapp.service.util.JPAHelper;
+import gr.aueb.cf.schoolapp.service.util.ShardRouter;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.lang.reflect.Member;
+import java.util.Properties;
+
+// The entity sequence, with the shard of the session factory stamped into every value (see ShardRouter).
+// Each shard keeps its own sequence; the stamp keeps ids unique across shards and tells which shard owns a row.
+// Unsharded the values are left as they are.
+public class ShardedSequenceGenerator extends SequenceStyleGenerator {
+    private final ShardedSequence config;
+    private int shard = -1;
+
+    // Instantiated by Hibernate for every field annotated with @ShardedSequence
+    public ShardedSequenceGenerator(ShardedSequence config, Member member, CustomIdGeneratorCreationContext context) {
+        this.config = config;
+    }
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        parameters.put(SEQUENCE_PARAM, config.name());
+        parameters.put(INCREMENT_PARAM, String.valueOf(config.allocationSize()));
+        super.configure(type, parameters, serviceRegistry);
+        Object shardIndex = serviceRegistry.requireService(ConfigurationService.class).getSettings().get(JPAHelper.SHARD_INDEX_PROPERTY);
+        if (shardIndex != null) shard = Integer.parseInt(shardIndex.toString());
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        Object value = super.generate(session, object);
+        return shard < 0 ? value : ShardRouter.encodeId(((Number) value).longValue(), shard);
+    }
+}
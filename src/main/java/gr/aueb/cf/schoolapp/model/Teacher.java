@@ -5,7 +5,10 @@ import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
-@Table(name = "teachers")
+@Table(name = "teachers", indexes = {
+        @Index(name = "idx_teachers_lastname_id", columnList = "lastname, id"),
+        @Index(name = "idx_teachers_updated_at_id", columnList = "updated_at, id")
+})
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
@@ -13,8 +16,10 @@ import lombok.*;
 @Setter
 public class Teacher extends AbstractEntity implements IdentifiableEntity{
 
+    // Same sequence and allocation as a plain @SequenceGenerator, the generated values carry their shard. A sequence
+    // rather than IDENTITY keeps insert batching; TeacherSequenceMigration moves it past ids from the AUTO_INCREMENT days.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @ShardedSequence(name = "teachers_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true, length = 9)
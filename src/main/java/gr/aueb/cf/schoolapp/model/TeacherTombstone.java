@@ -0,0 +1,25 @@
+package gr.aueb.cf.schoolapp.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Left behind by a deleted teacher so the change feed can report the delete
+@Entity
+@Table(name = "teacher_tombstones", indexes = {
+        @Index(name = "idx_teacher_tombstones_deleted_at_id", columnList = "deleted_at, id")
+})
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class TeacherTombstone implements IdentifiableEntity {
+
+    // The id of the deleted teacher
+    @Id
+    private Long id;
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+}
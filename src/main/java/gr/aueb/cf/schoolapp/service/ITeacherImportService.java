@@ -0,0 +1,13 @@
+package gr.aueb.cf.schoolapp.service;
+
+import gr.aueb.cf.schoolapp.core.exceptions.AppServerException;
+import gr.aueb.cf.schoolapp.core.exceptions.EntityNotFoundException;
+import gr.aueb.cf.schoolapp.dto.ImportFormat;
+import gr.aueb.cf.schoolapp.dto.ImportJobDTO;
+
+import java.io.InputStream;
+
+public interface ITeacherImportService {
+    ImportJobDTO submitImport(InputStream content, ImportFormat format, int batchSize) throws AppServerException;
+    ImportJobDTO getImportJob(String jobId) throws EntityNotFoundException;
+}
@@ -4,22 +4,49 @@ import gr.aueb.cf.schoolapp.core.exceptions.AppServerException;
 import gr.aueb.cf.schoolapp.core.exceptions.EntityAlreadyExistsException;
 import gr.aueb.cf.schoolapp.core.exceptions.EntityInvalidArgumentException;
 import gr.aueb.cf.schoolapp.core.exceptions.EntityNotFoundException;
+import gr.aueb.cf.schoolapp.core.exceptions.EntityOutdatedException;
+import gr.aueb.cf.schoolapp.dto.CacheStatsDTO;
+import gr.aueb.cf.schoolapp.dto.CountDTO;
+import gr.aueb.cf.schoolapp.dto.PaginatedResult;
+import gr.aueb.cf.schoolapp.dto.ResourceVersionDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherBatchResultDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherChangesDTO;
 import gr.aueb.cf.schoolapp.dto.TeacherInsertDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherPatchDTO;
 import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
 import gr.aueb.cf.schoolapp.dto.TeacherUpdateDTO;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface ITeacherService {
     TeacherReadOnlyDTO insertTeacher(TeacherInsertDTO teacherInsertDTO)
             throws EntityAlreadyExistsException, EntityInvalidArgumentException;
+    List<TeacherBatchResultDTO> insertTeachers(List<TeacherInsertDTO> teacherInsertDTOs) throws AppServerException;
+    // For rows the caller has already validated (the import does it in parallel), bean validation is skipped
+    List<TeacherBatchResultDTO> insertValidatedTeachers(List<TeacherInsertDTO> teacherInsertDTOs) throws AppServerException;
     TeacherReadOnlyDTO updateTeacher(TeacherUpdateDTO teacherUpdateDTO)
-            throws EntityNotFoundException, EntityInvalidArgumentException;
-    void deleteTeacher(Long id) throws EntityNotFoundException;
+            throws EntityNotFoundException, EntityOutdatedException, EntityAlreadyExistsException, EntityInvalidArgumentException;
+    TeacherReadOnlyDTO patchTeacher(Long id, TeacherPatchDTO teacherPatchDTO)
+            throws EntityNotFoundException, EntityOutdatedException, EntityAlreadyExistsException, EntityInvalidArgumentException;
+    TeacherReadOnlyDTO deleteTeacher(Long id, Long version) throws EntityNotFoundException, EntityOutdatedException;
     TeacherReadOnlyDTO getTeacherById(Long id) throws EntityNotFoundException;
     List<TeacherReadOnlyDTO> getTeachersByCriteria(Map<String, Object> criteria);
     List<TeacherReadOnlyDTO> getAllTeachers();
     long getTeachersCountByCriteria(Map<String, Object> criteria);
-    List<TeacherReadOnlyDTO> getTeachersByCriteriaPaginated(Map<String, Object> criteria, Integer page, Integer size);
+    CountDTO getTeachersCount(Map<String, Object> criteria, boolean approximate);
+    List<TeacherReadOnlyDTO> getTeachersByCriteriaPaginated(Map<String, Object> criteria, Integer page, Integer size)
+            throws EntityInvalidArgumentException;
+    PaginatedResult<TeacherReadOnlyDTO> getTeachersPage(Map<String, Object> criteria, Integer page, Integer size)
+            throws EntityInvalidArgumentException;
+    PaginatedResult<TeacherReadOnlyDTO> getTeachersByCriteriaKeyset(Map<String, Object> criteria, String cursor, Integer size)
+            throws EntityInvalidArgumentException;
+    void exportTeachers(Map<String, Object> criteria, Consumer<TeacherReadOnlyDTO> consumer);
+    List<CacheStatsDTO> getCacheStats();
+    ResourceVersionDTO getTeachersVersion(Map<String, Object> criteria);
+    List<TeacherReadOnlyDTO> searchTeachers(String query, int limit);
+    TeacherChangesDTO getTeacherChanges(String since, int limit) throws EntityInvalidArgumentException;
+    void subscribeToTeacherChanges(TeacherChangeBroadcaster.ChangeListener listener);
+    void rebuildSearchIndex();
 }
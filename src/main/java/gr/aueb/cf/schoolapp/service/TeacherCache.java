@@ -0,0 +1,144 @@
+package gr.aueb.cf.schoolapp.service;
+
+import gr.aueb.cf.schoolapp.core.cache.BoundedCache;
+import gr.aueb.cf.schoolapp.dto.CacheStatsDTO;
+import gr.aueb.cf.schoolapp.dto.CountDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+@ApplicationScoped
+public class TeacherCache {
+    private static final int DEFAULT_MAX_SIZE = 10_000;
+    private static final long DEFAULT_TTL_SECONDS = 300;
+    private static final int DEFAULT_COUNTS_MAX_SIZE = 1_000;
+
+    private final BoundedCache<Long, TeacherReadOnlyDTO> teachersById;
+    private final Map<String, Long> vatIndex = new ConcurrentHashMap<>();
+    private final LongAdder vatHits = new LongAdder();
+    private final LongAdder vatMisses = new LongAdder();
+    private final BoundedCache<String, CountDTO> countsByCriteria;
+    // Bumped after every committed write, so a count computed before the write is never cached after it
+    private final AtomicLong countsGeneration = new AtomicLong();
+    // The same for rows: bumped by every write before it touches teachersById, under rowsLock so a reader's
+    // check-then-put can not interleave with it
+    private final AtomicLong rowsGeneration = new AtomicLong();
+    private final Object rowsLock = new Object();
+    private final int maxSize;
+
+    public TeacherCache() {
+        this.maxSize = envOrDefault("SCHOOL7_CACHE_MAX_SIZE", DEFAULT_MAX_SIZE);
+        Duration ttl = Duration.ofSeconds(envOrDefault("SCHOOL7_CACHE_TTL_SECONDS", DEFAULT_TTL_SECONDS));
+        // The vat index only points into teachersById, so it is cleaned up whenever a teacher leaves the cache
+        this.teachersById = new BoundedCache<>("teachersById", maxSize, ttl, (id, dto) -> vatIndex.remove(dto.vat(), id));
+        this.countsByCriteria = new BoundedCache<>("teacherCounts", envOrDefault("SCHOOL7_CACHE_COUNTS_MAX_SIZE", DEFAULT_COUNTS_MAX_SIZE), ttl);
+    }
+
+    public Optional<TeacherReadOnlyDTO> getById(Long id) {
+        return teachersById.get(id);
+    }
+
+    public Optional<TeacherReadOnlyDTO> getByVat(String vat) {
+        Long id = vatIndex.get(vat);
+        Optional<TeacherReadOnlyDTO> teacher = id == null ? Optional.empty() : teachersById.get(id).filter(dto -> vat.equals(dto.vat()));
+        if (teacher.isPresent()) vatHits.increment(); else vatMisses.increment();
+        return teacher;
+    }
+
+    public long rowsGeneration() {
+        return rowsGeneration.get();
+    }
+
+    // For writers, after their commit, with rowsGeneration() taken before their transaction. Concurrent writes of one
+    // row can finish in any order, the highest version stays. If another write reached the cache in between (a delete
+    // of this row among them) the row is dropped instead: an older writer must not bring a deleted row back.
+    public void put(TeacherReadOnlyDTO teacher, long generation) {
+        synchronized (rowsLock) {
+            if (rowsGeneration.getAndIncrement() == generation) {
+                store(teacher);
+            } else {
+                teachersById.invalidate(teacher.id());
+            }
+        }
+    }
+
+    // For readers: a row read before a write committed is not cached once that write has reached the cache,
+    // it would be served stale for the whole TTL. generation is rowsGeneration() taken before the read.
+    public void putIfCurrent(TeacherReadOnlyDTO teacher, long generation) {
+        synchronized (rowsLock) {
+            if (rowsGeneration.get() == generation) store(teacher);
+        }
+    }
+
+    public void evict(Long id) {
+        synchronized (rowsLock) {
+            rowsGeneration.incrementAndGet();
+        }
+        teachersById.invalidate(id);
+    }
+
+    public void evictAll() {
+        synchronized (rowsLock) {
+            rowsGeneration.incrementAndGet();
+        }
+        teachersById.invalidateAll();
+        evictCounts();
+    }
+
+    private void store(TeacherReadOnlyDTO teacher) {
+        if (teachersById.putUnless(teacher.id(), teacher, (current, candidate) -> current.version() > candidate.version())) {
+            vatIndex.put(teacher.vat(), teacher.id());
+        }
+    }
+
+    public Optional<CountDTO> getCount(Map<String, Object> criteria) {
+        return countsByCriteria.get(criteriaKey(criteria));
+    }
+
+    public long countsGeneration() {
+        return countsGeneration.get();
+    }
+
+    public void putCount(Map<String, Object> criteria, CountDTO count, long generation) {
+        String key = criteriaKey(criteria);
+        countsByCriteria.put(key, count);
+        if (countsGeneration.get() != generation) countsByCriteria.invalidate(key);
+    }
+
+    public void evictCounts() {
+        countsGeneration.incrementAndGet();
+        countsByCriteria.invalidateAll();
+    }
+
+    public List<CacheStatsDTO> stats() {
+        return List.of(teachersById.stats(),
+                new CacheStatsDTO("teachersByVat", vatHits.sum(), vatMisses.sum(), 0, vatIndex.size(), maxSize),
+                countsByCriteria.stats());
+    }
+
+    // LIKE filters compare lower-cased values, so "Pap%" and "pap%" match the same rows
+    static String criteriaKey(Map<String, Object> criteria) {
+        Map<String, Object> normalized = new TreeMap<>();
+        criteria.forEach((key, value) -> normalized.put(key,
+                value instanceof String text && text.contains("%") ? text.toLowerCase() : value));
+        return normalized.toString();
+    }
+
+    private static int envOrDefault(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static long envOrDefault(String name, long defaultValue) {
+        String value = System.getenv(name);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+}
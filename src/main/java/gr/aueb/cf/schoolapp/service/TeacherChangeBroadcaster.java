@@ -0,0 +1,111 @@
+package gr.aueb.cf.schoolapp.service;
+
+import gr.aueb.cf.schoolapp.core.metrics.MetricsRegistry;
+import gr.aueb.cf.schoolapp.dto.TeacherChangeDTO;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fans live teacher changes out to stream subscribers. Every subscriber has a bounded queue drained by its own
+// virtual thread, so a slow client never blocks a write path and never holds more than its queue capacity.
+// A subscriber whose queue overflows is dropped and told to resync from the change feed.
+@ApplicationScoped
+public class TeacherChangeBroadcaster {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TeacherChangeBroadcaster.class);
+    private static final int DEFAULT_QUEUE_CAPACITY = 256;
+    // Sends not yet completed per subscriber; the drain thread only waits when this many are outstanding
+    private static final int MAX_SENDS_IN_FLIGHT = 16;
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final int queueCapacity;
+    private final LongAdder overflows = MetricsRegistry.counter("teacher_change_subscribers_dropped_total",
+            "Change stream subscribers dropped because they fell too far behind", "");
+
+    public interface ChangeListener {
+        // Completes when the change was written to the client, an exceptional completion closes the subscription
+        CompletionStage<?> onChange(TeacherChangeDTO change) throws Exception;
+        // The last change delivered before the overflow, null when nothing was delivered
+        void onOverflow(TeacherChangeDTO lastDelivered);
+        void onClose();
+    }
+
+    public TeacherChangeBroadcaster() {
+        String capacity = System.getenv("SCHOOL7_CHANGES_QUEUE_CAPACITY");
+        this.queueCapacity = capacity == null ? DEFAULT_QUEUE_CAPACITY : Integer.parseInt(capacity);
+        MetricsRegistry.gauge("teacher_change_subscribers", "Open change stream subscribers", "", subscriptions::size);
+    }
+
+    public void subscribe(ChangeListener listener) {
+        Subscription subscription = new Subscription(listener, new ArrayBlockingQueue<>(queueCapacity));
+        subscriptions.add(subscription);
+        subscription.thread.start();
+    }
+
+    public void publish(TeacherChangeDTO change) {
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.queue.offer(change)) {
+                subscriptions.remove(subscription);
+                subscription.overflowed = true;
+                subscription.thread.interrupt();
+                overflows.increment();
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscriptions.forEach(subscription -> subscription.thread.interrupt());
+        subscriptions.clear();
+    }
+
+    private class Subscription {
+        private final ChangeListener listener;
+        private final BlockingQueue<TeacherChangeDTO> queue;
+        private final Thread thread;
+        private final Semaphore sendsInFlight = new Semaphore(MAX_SENDS_IN_FLIGHT);
+        private volatile boolean overflowed;
+        private volatile TeacherChangeDTO lastDelivered;
+
+        private Subscription(ChangeListener listener, BlockingQueue<TeacherChangeDTO> queue) {
+            this.listener = listener;
+            this.queue = queue;
+            this.thread = Thread.ofVirtual().name("teacher-changes-subscriber").unstarted(this::drain);
+        }
+
+        private void drain() {
+            try {
+                while (!overflowed) {
+                    TeacherChangeDTO change = queue.take();
+                    sendsInFlight.acquire();
+                    listener.onChange(change).whenComplete((sent, error) -> {
+                        sendsInFlight.release();
+                        if (error == null) {
+                            lastDelivered = change;
+                        } else {
+                            LOGGER.debug("Change stream subscriber closed.", error);
+                            thread.interrupt();
+                        }
+                    });
+                }
+            } catch (InterruptedException e) {
+                // Overflow, shutdown or a failed send
+            } catch (Exception e) {
+                LOGGER.debug("Change stream subscriber closed.", e);
+            } finally {
+                subscriptions.remove(this);
+                Thread.interrupted();
+                if (overflowed) listener.onOverflow(lastDelivered);
+                listener.onClose();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package gr.aueb.cf.schoolapp.service;
+
+import gr.aueb.cf.schoolapp.dto.ImportErrorDTO;
+import gr.aueb.cf.schoolapp.dto.ImportFormat;
+import gr.aueb.cf.schoolapp.dto.ImportJobDTO;
+import gr.aueb.cf.schoolapp.dto.ImportJobStatus;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Progress of one import, updated by the job thread and read by status requests
+class TeacherImportJob {
+    private static final int MAX_ERRORS = 1000;
+
+    @Getter
+    private final String id = UUID.randomUUID().toString();
+    @Getter
+    private final ImportFormat format;
+    @Getter
+    private final Path file;
+    @Getter
+    private final int batchSize;
+
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsInserted = new AtomicLong();
+    private final AtomicLong rowsDuplicate = new AtomicLong();
+    private final AtomicLong rowsInvalid = new AtomicLong();
+    private final List<ImportErrorDTO> errors = new ArrayList<>();
+    private volatile ImportJobStatus status = ImportJobStatus.QUEUED;
+    private volatile String message;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    @Getter
+    private volatile long finishedMillis;
+    private boolean errorsTruncated;
+
+    TeacherImportJob(ImportFormat format, Path file, int batchSize) {
+        this.format = format;
+        this.file = file;
+        this.batchSize = batchSize;
+    }
+
+    void start() {
+        startedNanos = System.nanoTime();
+        status = ImportJobStatus.RUNNING;
+    }
+
+    void complete() {
+        finish(ImportJobStatus.COMPLETED, null);
+    }
+
+    // Every chunk commits on its own, so rows inserted before the failure stay in the database
+    void fail(String message) {
+        long committed = rowsInserted.get();
+        if (committed == 0) finish(ImportJobStatus.FAILED, message);
+        else finish(ImportJobStatus.PARTIALLY_IMPORTED, committed + " rows were committed before the import stopped: " + message);
+    }
+
+    private void finish(ImportJobStatus status, String message) {
+        finishedNanos = System.nanoTime();
+        finishedMillis = System.currentTimeMillis();
+        this.message = message;
+        this.status = status;
+    }
+
+    boolean isFinished() {
+        return status == ImportJobStatus.COMPLETED || status == ImportJobStatus.PARTIALLY_IMPORTED || status == ImportJobStatus.FAILED;
+    }
+
+    void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    void inserted() {
+        rowsInserted.incrementAndGet();
+    }
+
+    void duplicate(long row, String vat, String message) {
+        rowsDuplicate.incrementAndGet();
+        addError(row, vat, message);
+    }
+
+    void invalid(long row, String vat, String message) {
+        rowsInvalid.incrementAndGet();
+        addError(row, vat, message);
+    }
+
+    private synchronized void addError(long row, String vat, String message) {
+        if (errors.size() < MAX_ERRORS) errors.add(new ImportErrorDTO(row, vat, message)); else errorsTruncated = true;
+    }
+
+    synchronized ImportJobDTO toDTO() {
+        long elapsedNanos = startedNanos == 0 ? 0 : (isFinished() ? finishedNanos : System.nanoTime()) - startedNanos;
+        double rowsPerSecond = elapsedNanos == 0 ? 0 : rowsRead.get() * 1_000_000_000.0 / elapsedNanos;
+        return new ImportJobDTO(id, status, format, rowsRead.get(), rowsInserted.get(), rowsDuplicate.get(), rowsInvalid.get(),
+                elapsedNanos / 1_000_000, rowsPerSecond, List.copyOf(errors), errorsTruncated, message);
+    }
+}
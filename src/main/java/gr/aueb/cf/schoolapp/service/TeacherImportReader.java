@@ -0,0 +1,130 @@
+package gr.aueb.cf.schoolapp.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gr.aueb.cf.schoolapp.dto.ImportFormat;
+import gr.aueb.cf.schoolapp.dto.TeacherInsertDTO;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Streams an uploaded roster one line at a time. CSV needs a header naming the firstname, lastname and vat columns
+// (in any order), NDJSON holds one TeacherInsertDTO object per line. Rows that can not be parsed come back with an error.
+class TeacherImportReader implements Closeable {
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final BufferedReader reader;
+    private final ImportFormat format;
+    private Map<String, Integer> columns;
+    private long line;
+
+    record ImportRow(long row, TeacherInsertDTO dto, String error) {
+        ImportRow withError(String error) {
+            return new ImportRow(row, dto, error);
+        }
+
+        String vat() {
+            return dto == null ? null : dto.vat();
+        }
+    }
+
+    TeacherImportReader(Path file, ImportFormat format) throws IOException {
+        this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        this.format = format;
+    }
+
+    // null at the end of the file
+    ImportRow next() throws IOException {
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) continue;
+            if (format == ImportFormat.NDJSON) return parseJson(text);
+            if (columns == null) {
+                readHeader(text);
+                continue;
+            }
+            return parseCsv(text);
+        }
+        return null;
+    }
+
+    private ImportRow parseJson(String text) {
+        try {
+            return new ImportRow(line, JSON_MAPPER.readValue(text, TeacherInsertDTO.class), null);
+        } catch (JsonProcessingException e) {
+            return new ImportRow(line, null, "Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private void readHeader(String text) throws IOException {
+        List<String> names = splitCsv(text.replace("\uFEFF", ""));
+        if (names == null) throw new IOException("Unterminated quoted value in the CSV header");
+        columns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.keySet().containsAll(List.of("firstname", "lastname", "vat"))) {
+            throw new IOException("The CSV header must contain the columns firstname, lastname and vat");
+        }
+    }
+
+    private ImportRow parseCsv(String text) {
+        List<String> values = splitCsv(text);
+        if (values == null) return new ImportRow(line, null, "Unterminated quoted value");
+        return new ImportRow(line, new TeacherInsertDTO(column(values, "firstname"), column(values, "lastname"), column(values, "vat")), null);
+    }
+
+    private String column(List<String> values, String name) {
+        int index = columns.get(name);
+        if (index >= values.size()) return null;
+        String value = values.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    // RFC 4180 quoting within a single line ("" is an escaped quote); null when a quote is left open
+    private static List<String> splitCsv(String text) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) return null;
+        values.add(value.toString());
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
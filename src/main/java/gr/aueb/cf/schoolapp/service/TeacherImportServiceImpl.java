@@ -0,0 +1,154 @@
+package gr.aueb.cf.schoolapp.service;
+
+import gr.aueb.cf.schoolapp.core.exceptions.AppServerException;
+import gr.aueb.cf.schoolapp.core.exceptions.EntityNotFoundException;
+import gr.aueb.cf.schoolapp.dto.ImportFormat;
+import gr.aueb.cf.schoolapp.dto.ImportJobDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherBatchResultDTO;
+import gr.aueb.cf.schoolapp.service.TeacherImportReader.ImportRow;
+import gr.aueb.cf.schoolapp.service.util.PersistenceScope;
+import gr.aueb.cf.schoolapp.validator.ValidatorUtil;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@ApplicationScoped
+@RequiredArgsConstructor(onConstructor_ = @__(@Inject))
+public class TeacherImportServiceImpl implements ITeacherImportService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TeacherImportServiceImpl.class);
+    // Chunks validated ahead of the one being written
+    private static final int CHUNKS_IN_FLIGHT = 4;
+    private static final long JOB_RETENTION_MILLIS = 60 * 60 * 1000;
+
+    private final ITeacherService teacherService;
+
+    private final Map<String, TeacherImportJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService jobExecutor = Executors.newFixedThreadPool(
+            Integer.parseInt(Objects.requireNonNullElse(System.getenv("SCHOOL7_IMPORT_CONCURRENCY"), "2")),
+            Thread.ofPlatform().name("teacher-import-", 0).daemon().factory());
+    private final ExecutorService validationExecutor = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            Thread.ofPlatform().name("teacher-import-validation-", 0).daemon().factory());
+
+    @Override
+    public ImportJobDTO submitImport(InputStream content, ImportFormat format, int batchSize) throws AppServerException {
+        purgeFinishedJobs();
+        Path file;
+        try {
+            // Spool the upload so the request returns as soon as it is received, not when it is imported
+            file = Files.createTempFile("teachers-import-", "." + format.name().toLowerCase());
+            Files.copy(content, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.error("Teacher import upload could not be stored.", e);
+            throw new AppServerException("TeacherImport", "Import upload could not be stored");
+        }
+        TeacherImportJob job = new TeacherImportJob(format, file, batchSize);
+        jobs.put(job.getId(), job);
+        jobExecutor.execute(PersistenceScope.wrap(() -> run(job)));
+        LOGGER.info("Teacher import job={} queued, format={}, batchSize={}.", job.getId(), format, batchSize);
+        return job.toDTO();
+    }
+
+    @Override
+    public ImportJobDTO getImportJob(String jobId) throws EntityNotFoundException {
+        TeacherImportJob job = jobs.get(jobId);
+        if (job == null) throw new EntityNotFoundException("ImportJob", "Import job " + jobId + " not found");
+        return job.toDTO();
+    }
+
+    // Parsing and writing stay on the job thread and in file order, validation of the next chunks runs in parallel meanwhile
+    private void run(TeacherImportJob job) {
+        job.start();
+        Set<String> seenVats = new HashSet<>();
+        Deque<CompletableFuture<List<ImportRow>>> inFlight = new ArrayDeque<>();
+        try (TeacherImportReader reader = new TeacherImportReader(job.getFile(), job.getFormat())) {
+            List<ImportRow> chunk = new ArrayList<>(job.getBatchSize());
+            ImportRow row;
+            while ((row = reader.next()) != null) {
+                job.rowRead();
+                chunk.add(row);
+                if (chunk.size() == job.getBatchSize()) {
+                    inFlight.add(validate(chunk));
+                    chunk = new ArrayList<>(job.getBatchSize());
+                    if (inFlight.size() > CHUNKS_IN_FLIGHT) write(job, inFlight.poll().join(), seenVats);
+                }
+            }
+            if (!chunk.isEmpty()) inFlight.add(validate(chunk));
+            while (!inFlight.isEmpty()) write(job, inFlight.poll().join(), seenVats);
+            job.complete();
+            ImportJobDTO result = job.toDTO();
+            LOGGER.info("Teacher import job={} completed, read={}, inserted={}, duplicate={}, invalid={}, rowsPerSecond={}.", job.getId(),
+                    result.rowsRead(), result.rowsInserted(), result.rowsDuplicate(), result.rowsInvalid(), Math.round(result.rowsPerSecond()));
+        } catch (IOException | AppServerException | RuntimeException e) {
+            job.fail(e.getMessage());
+            LOGGER.error("Teacher import job={} failed.", job.getId(), e);
+        } finally {
+            try {
+                Files.deleteIfExists(job.getFile());
+            } catch (IOException e) {
+                LOGGER.warn("Teacher import file {} not deleted.", job.getFile(), e);
+            }
+        }
+    }
+
+    private CompletableFuture<List<ImportRow>> validate(List<ImportRow> chunk) {
+        return CompletableFuture.supplyAsync(() -> chunk.stream()
+                .map(row -> {
+                    if (row.error() != null) return row;
+                    List<String> errors = ValidatorUtil.validateDTO(row.dto());
+                    return errors.isEmpty() ? row : row.withError(String.join(",", errors));
+                })
+                .toList(), validationExecutor);
+    }
+
+    // One transaction per chunk; the insert also drops the vats that already exist with one query per chunk.
+    // The rows were validated in parallel already, so they take the path that does not validate them again.
+    private void write(TeacherImportJob job, List<ImportRow> rows, Set<String> seenVats) throws AppServerException {
+        List<ImportRow> candidates = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            if (row.error() != null) {
+                job.invalid(row.row(), row.vat(), row.error());
+            } else if (!seenVats.add(row.vat())) {
+                job.duplicate(row.row(), row.vat(), "Vat " + row.vat() + " appears more than once in the file");
+            } else {
+                candidates.add(row);
+            }
+        }
+        if (candidates.isEmpty()) return;
+
+        List<TeacherBatchResultDTO> results = teacherService.insertValidatedTeachers(candidates.stream().map(ImportRow::dto).toList());
+        for (TeacherBatchResultDTO result : results) {
+            long row = candidates.get(result.index()).row();
+            switch (result.status()) {
+                case CREATED -> job.inserted();
+                case DUPLICATE -> job.duplicate(row, result.vat(), result.message());
+                case INVALID -> job.invalid(row, result.vat(), result.message());
+            }
+        }
+    }
+
+    private void purgeFinishedJobs() {
+        long expired = System.currentTimeMillis() - JOB_RETENTION_MILLIS;
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedMillis() < expired);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobExecutor.shutdownNow();
+        validationExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,75 @@
+package gr.aueb.cf.schoolapp.service;
+
+import gr.aueb.cf.schoolapp.core.search.TrigramIndex;
+import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+@ApplicationScoped
+public class TeacherSearchIndex {
+    private static final double MIN_SIMILARITY = 0.7;
+
+    private final TrigramIndex<Long> index = new TrigramIndex<>(MIN_SIMILARITY);
+    private volatile boolean ready;
+    // Writes that land while a rebuild reads its snapshot, replayed over it afterwards: the snapshot may have been
+    // read before they committed and would otherwise undo them. A null value is a removal. Guarded by index.
+    private Map<Long, TeacherReadOnlyDTO> writesDuringRebuild;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Returns the number of teachers in the snapshot. Callers run one rebuild at a time.
+    public int rebuild(Supplier<List<TeacherReadOnlyDTO>> snapshot) {
+        synchronized (index) {
+            writesDuringRebuild = new HashMap<>();
+        }
+        try {
+            List<TeacherReadOnlyDTO> teachers = snapshot.get();
+            synchronized (index) {
+                index.clear();
+                teachers.forEach(this::index);
+                writesDuringRebuild.forEach((id, teacher) -> {
+                    if (teacher == null) index.remove(id);
+                    else index(teacher);
+                });
+                ready = true;
+            }
+            return teachers.size();
+        } finally {
+            synchronized (index) {
+                writesDuringRebuild = null;
+            }
+        }
+    }
+
+    public void put(TeacherReadOnlyDTO teacher) {
+        synchronized (index) {
+            index(teacher);
+            if (writesDuringRebuild != null) writesDuringRebuild.put(teacher.id(), teacher);
+        }
+    }
+
+    public void remove(Long id) {
+        synchronized (index) {
+            index.remove(id);
+            if (writesDuringRebuild != null) writesDuringRebuild.put(id, null);
+        }
+    }
+
+    public List<Long> search(String query, int limit) {
+        return index.search(query, limit);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    private void index(TeacherReadOnlyDTO teacher) {
+        index.put(teacher.id(), teacher.firstname(), teacher.lastname(), teacher.vat());
+    }
+}
@@ -1,96 +1,344 @@
 package gr.aueb.cf.schoolapp.service;
 
 
+import gr.aueb.cf.schoolapp.core.cache.SingleFlight;
+import gr.aueb.cf.schoolapp.core.exceptions.AppServerException;
 import gr.aueb.cf.schoolapp.core.exceptions.EntityAlreadyExistsException;
 import gr.aueb.cf.schoolapp.core.exceptions.EntityInvalidArgumentException;
 import gr.aueb.cf.schoolapp.core.exceptions.EntityNotFoundException;
+import gr.aueb.cf.schoolapp.core.exceptions.EntityOutdatedException;
 import gr.aueb.cf.schoolapp.dao.ITeacherDAO;
+import gr.aueb.cf.schoolapp.dao.ITeacherTombstoneDAO;
+import gr.aueb.cf.schoolapp.dto.BatchItemStatus;
+import gr.aueb.cf.schoolapp.dto.CacheStatsDTO;
+import gr.aueb.cf.schoolapp.dto.ChangeType;
+import gr.aueb.cf.schoolapp.dto.CountDTO;
+import gr.aueb.cf.schoolapp.dto.PaginatedResult;
+import gr.aueb.cf.schoolapp.dto.ResourceVersionDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherBatchResultDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherChangeDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherChangesDTO;
 import gr.aueb.cf.schoolapp.dto.TeacherInsertDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherPatchDTO;
 import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
 import gr.aueb.cf.schoolapp.dto.TeacherUpdateDTO;
 import gr.aueb.cf.schoolapp.mapper.Mapper;
 import gr.aueb.cf.schoolapp.model.Teacher;
+import gr.aueb.cf.schoolapp.model.TeacherTombstone;
+import gr.aueb.cf.schoolapp.service.util.CursorUtil;
+import gr.aueb.cf.schoolapp.service.util.CursorUtil.KeysetCursor;
 import gr.aueb.cf.schoolapp.service.util.JPAHelper;
+import gr.aueb.cf.schoolapp.validator.ValidatorUtil;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
+import jakarta.persistence.PersistenceException;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.List;
-import java.util.Map;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @ApplicationScoped
 @RequiredArgsConstructor(onConstructor_ = @__(@Inject))
 public class TeacherServiceImpl implements ITeacherService {
     private static final Logger LOGGER = LoggerFactory.getLogger(TeacherServiceImpl.class);
+    private static final int EXPORT_FETCH_SIZE = 500;
+    private static final int INSERT_BATCH_SIZE = 50;
+    private static final int APPROXIMATE_COUNT_CAP = 1000;
+    // The change feed stops this far behind now, so a transaction that committed late with an older
+    // updatedAt is not skipped by a client that already moved past that timestamp
+    private static final long CHANGES_SETTLE_MILLIS = 1000;
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+    // How long a change token can be resumed; tombstones older than this are purged, so an older token could miss deletes
+    private static final Duration CHANGES_RETENTION = Duration.ofHours(
+            Long.parseLong(Objects.requireNonNullElse(System.getenv("SCHOOL7_CHANGES_RETENTION_HOURS"), "168")));
+    private static final long TOMBSTONE_PURGE_INTERVAL_MILLIS = 60 * 60 * 1000;
 
     private final ITeacherDAO teacherDAO;
+    private final TeacherCache teacherCache;
+    private final TeacherSearchIndex searchIndex;
+    private final ITeacherTombstoneDAO tombstoneDAO;
+    private final TeacherChangeBroadcaster changeBroadcaster;
+    // Identical reads arriving together (e.g. a schedule page loaded by every class at once) share one query
+    private final SingleFlight<Long, TeacherReadOnlyDTO> teacherByIdFlight = new SingleFlight<>("teacherById");
+    private final SingleFlight<String, List<TeacherReadOnlyDTO>> teachersByCriteriaFlight = new SingleFlight<>("teachersByCriteria");
+    // Concurrent first searches (and the startup build) share one full table load
+    private final SingleFlight<String, Integer> searchIndexFlight = new SingleFlight<>("searchIndexRebuild");
+    private final AtomicLong nextTombstonePurgeMillis = new AtomicLong();
 
     @Override
     public TeacherReadOnlyDTO insertTeacher(TeacherInsertDTO teacherInsertDTO) throws EntityAlreadyExistsException, EntityInvalidArgumentException {
         try {
+            // No pre-select on vat: the unique constraint decides, so concurrent inserts of the same vat
+            // can not both succeed and the insert is a single statement (sent when the commit flushes)
+            long generation = teacherCache.rowsGeneration();
             JPAHelper.beginTransaction();
-            if (teacherDAO.getByVat(teacherInsertDTO.vat()).isPresent()) throw new EntityAlreadyExistsException("Teacher", "Teacher with vat " + teacherInsertDTO.vat() + " already exists");
             Teacher teacher = Mapper.mapToTeacher(teacherInsertDTO);
             TeacherReadOnlyDTO readOnlyDTO = teacherDAO.insert(teacher).map(Mapper::mapToReadOnlyDTO).orElseThrow(() -> new EntityInvalidArgumentException("Teacher", "Teacher with vat " + teacherInsertDTO.vat() + " not inserted"));
             JPAHelper.commitTransaction();
+            teacherCache.put(readOnlyDTO, generation);
+            teacherCache.evictCounts();
+            searchIndex.put(readOnlyDTO);
+            changeBroadcaster.publish(toChange(ChangeType.INSERT, readOnlyDTO.id(), readOnlyDTO, teacher.getUpdatedAt()));
             LOGGER.info("Teacher with id={}, lastname={}, firstname={}, vat={} inserted.", readOnlyDTO.id(), readOnlyDTO.lastname(), readOnlyDTO.firstname(), readOnlyDTO.vat());
             return readOnlyDTO;
-        } catch (EntityAlreadyExistsException | EntityInvalidArgumentException e) {
+        } catch (EntityInvalidArgumentException e) {
             JPAHelper.rollbackTransaction();
             LOGGER.error("Teacher with firstname={}, lastname={}, vat={} not inserted.", teacherInsertDTO.firstname(), teacherInsertDTO.lastname(), teacherInsertDTO.vat());
             throw e;
+        } catch (PersistenceException e) {
+            JPAHelper.rollbackTransaction();
+            if (!JPAHelper.isUniqueViolation(e)) throw e;
+            LOGGER.error("Teacher with firstname={}, lastname={}, vat={} not inserted, vat already exists.", teacherInsertDTO.firstname(), teacherInsertDTO.lastname(), teacherInsertDTO.vat());
+            throw new EntityAlreadyExistsException("Teacher", "Teacher with vat " + teacherInsertDTO.vat() + " already exists");
         } finally {
             JPAHelper.closeEntityManager();
         }
     }
 
     @Override
-    public TeacherReadOnlyDTO updateTeacher(TeacherUpdateDTO teacherUpdateDTO) throws EntityNotFoundException, EntityInvalidArgumentException {
+    public List<TeacherBatchResultDTO> insertTeachers(List<TeacherInsertDTO> teacherInsertDTOs) throws AppServerException {
+        return insertTeachers(teacherInsertDTOs, true);
+    }
+
+    @Override
+    public List<TeacherBatchResultDTO> insertValidatedTeachers(List<TeacherInsertDTO> teacherInsertDTOs) throws AppServerException {
+        return insertTeachers(teacherInsertDTOs, false);
+    }
+
+    private List<TeacherBatchResultDTO> insertTeachers(List<TeacherInsertDTO> teacherInsertDTOs, boolean validate) throws AppServerException {
+        TeacherBatchResultDTO[] results = new TeacherBatchResultDTO[teacherInsertDTOs.size()];
+        Map<String, Integer> candidates = new LinkedHashMap<>();
+
+        for (int i = 0; i < teacherInsertDTOs.size(); i++) {
+            TeacherInsertDTO dto = teacherInsertDTOs.get(i);
+            List<String> errors = dto == null ? List.of("Teacher can not be empty") : validate ? ValidatorUtil.validateDTO(dto) : List.of();
+            if (!errors.isEmpty()) {
+                results[i] = new TeacherBatchResultDTO(i, dto == null ? null : dto.vat(), BatchItemStatus.INVALID, null, String.join(",", errors));
+            } else if (candidates.putIfAbsent(dto.vat(), i) != null) {
+                results[i] = new TeacherBatchResultDTO(i, dto.vat(), BatchItemStatus.DUPLICATE, null, "Vat " + dto.vat() + " appears more than once in the batch");
+            }
+        }
+
+        if (!candidates.isEmpty()) {
+            try {
+                JPAHelper.beginTransaction();
+                Set<String> existingVats = new HashSet<>(teacherDAO.getExistingVats(candidates.keySet()));
+                List<Integer> indexes = new ArrayList<>();
+                List<Teacher> teachers = new ArrayList<>();
+                for (Map.Entry<String, Integer> candidate : candidates.entrySet()) {
+                    int index = candidate.getValue();
+                    if (existingVats.contains(candidate.getKey())) {
+                        results[index] = new TeacherBatchResultDTO(index, candidate.getKey(), BatchItemStatus.DUPLICATE, null, "Teacher with vat " + candidate.getKey() + " already exists");
+                    } else {
+                        indexes.add(index);
+                        teachers.add(Mapper.mapToTeacher(teacherInsertDTOs.get(index)));
+                    }
+                }
+                teacherDAO.insertAll(teachers, INSERT_BATCH_SIZE);
+                JPAHelper.commitTransaction();
+                if (!teachers.isEmpty()) teacherCache.evictCounts();
+                for (int i = 0; i < teachers.size(); i++) {
+                    int index = indexes.get(i);
+                    TeacherReadOnlyDTO readOnlyDTO = Mapper.mapToReadOnlyDTO(teachers.get(i));
+                    searchIndex.put(readOnlyDTO);
+                    changeBroadcaster.publish(toChange(ChangeType.INSERT, readOnlyDTO.id(), readOnlyDTO, teachers.get(i).getUpdatedAt()));
+                    results[index] = new TeacherBatchResultDTO(index, readOnlyDTO.vat(), BatchItemStatus.CREATED, readOnlyDTO, null);
+                }
+                LOGGER.info("Teacher batch of {} processed, {} inserted.", teacherInsertDTOs.size(), teachers.size());
+            } catch (PersistenceException e) {
+                JPAHelper.rollbackTransaction();
+                LOGGER.error("Teacher batch of {} not inserted.", teacherInsertDTOs.size(), e);
+                throw new AppServerException("TeacherBatch", "Teacher batch not inserted");
+            } finally {
+                JPAHelper.closeEntityManager();
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public TeacherReadOnlyDTO updateTeacher(TeacherUpdateDTO teacherUpdateDTO)
+            throws EntityNotFoundException, EntityOutdatedException, EntityAlreadyExistsException, EntityInvalidArgumentException {
+        requireSameShard(teacherUpdateDTO.id(), teacherUpdateDTO.vat());
+        Map<String, Object> fields = Map.of("firstname", teacherUpdateDTO.firstname(),
+                "lastname", teacherUpdateDTO.lastname(), "vat", teacherUpdateDTO.vat());
+        LocalDateTime changedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        long generation = teacherCache.rowsGeneration();
         try {
             JPAHelper.beginTransaction();
-            teacherDAO.getByVat(teacherUpdateDTO.vat()).orElseThrow(() -> new EntityNotFoundException("Teacher", "Teacher with vat " + teacherUpdateDTO.vat() + " not found"));
-            teacherDAO.getById(teacherUpdateDTO.id()).orElseThrow(() -> new EntityNotFoundException("Teacher", "Teacher with id " + teacherUpdateDTO.id() + " not found"));
-            Teacher teacher = Mapper.mapToTeacher(teacherUpdateDTO);
-            TeacherReadOnlyDTO teacherReadOnlyDTO = teacherDAO.update(teacher)
-                    .map(Mapper::mapToReadOnlyDTO)
-                    .orElseThrow(() -> new EntityInvalidArgumentException("Teacher", "Error during update"));
+            int updated = teacherDAO.updateFieldsByIdAndVersion(teacherUpdateDTO.id(), teacherUpdateDTO.version(), fields, changedAt);
+            requireWritten(updated, teacherUpdateDTO.id(), teacherUpdateDTO.version());
+            // An unconditional update does not know the version it replaced, so only then is the row read back
+            TeacherReadOnlyDTO teacherReadOnlyDTO = teacherUpdateDTO.version() != null
+                    ? new TeacherReadOnlyDTO(teacherUpdateDTO.id(), teacherUpdateDTO.firstname(), teacherUpdateDTO.lastname(),
+                        teacherUpdateDTO.vat(), teacherUpdateDTO.version() + 1, changedAt)
+                    : teacherDAO.getProjectionById(TeacherReadOnlyDTO.class, Mapper.TEACHER_READ_ONLY_FIELDS, teacherUpdateDTO.id())
+                        .orElseThrow(() -> new EntityNotFoundException("Teacher", "Teacher with id " + teacherUpdateDTO.id() + " not found"));
             JPAHelper.commitTransaction();
+            afterUpdate(teacherReadOnlyDTO, changedAt, generation);
             LOGGER.info("Teacher with id={} updated successfully", teacherReadOnlyDTO.id());
             return teacherReadOnlyDTO;
-        } catch (EntityNotFoundException | EntityInvalidArgumentException e) {
+        } catch (EntityNotFoundException | EntityOutdatedException e) {
             JPAHelper.rollbackTransaction();
             LOGGER.error("Error. Teacher with vat={}, firstname={}, lastname={} not updated.", teacherUpdateDTO.vat(), teacherUpdateDTO.firstname(), teacherUpdateDTO.lastname());
             throw e;
+        } catch (PersistenceException e) {
+            JPAHelper.rollbackTransaction();
+            if (!JPAHelper.isUniqueViolation(e)) throw e;
+            LOGGER.error("Teacher with id={} not updated, vat={} already exists.", teacherUpdateDTO.id(), teacherUpdateDTO.vat());
+            throw new EntityAlreadyExistsException("Teacher", "Teacher with vat " + teacherUpdateDTO.vat() + " already exists");
         } finally {
             JPAHelper.closeEntityManager();
         }
     }
 
     @Override
-    public void deleteTeacher(Long id) throws EntityNotFoundException {
+    public TeacherReadOnlyDTO patchTeacher(Long id, TeacherPatchDTO teacherPatchDTO)
+            throws EntityNotFoundException, EntityOutdatedException, EntityAlreadyExistsException, EntityInvalidArgumentException {
+        Map<String, Object> fields = new HashMap<>();
+        if (teacherPatchDTO.firstname() != null) fields.put("firstname", teacherPatchDTO.firstname());
+        if (teacherPatchDTO.lastname() != null) fields.put("lastname", teacherPatchDTO.lastname());
+        if (teacherPatchDTO.vat() != null) fields.put("vat", teacherPatchDTO.vat());
+        if (fields.isEmpty()) throw new EntityInvalidArgumentException("Teacher", "Nothing to update");
+        if (teacherPatchDTO.vat() != null) requireSameShard(id, teacherPatchDTO.vat());
+
+        Optional<TeacherReadOnlyDTO> cached = teacherCache.getById(id).filter(dto -> dto.version().equals(teacherPatchDTO.version()));
+        LocalDateTime changedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        long generation = teacherCache.rowsGeneration();
         try {
             JPAHelper.beginTransaction();
-            teacherDAO.getById(id).orElseThrow(() -> new EntityNotFoundException("Teacher", "Teacher with id " + id + " not found for delete."));
-            teacherDAO.delete(id);
+            int updated = teacherDAO.updateFieldsByIdAndVersion(id, teacherPatchDTO.version(), fields, changedAt);
+            requireWritten(updated, id, teacherPatchDTO.version());
+            // The cached row is exactly the version that was patched, so the result can be built without reading it back
+            TeacherReadOnlyDTO teacherReadOnlyDTO = cached.isPresent()
+                    ? new TeacherReadOnlyDTO(id,
+                        Objects.requireNonNullElse(teacherPatchDTO.firstname(), cached.get().firstname()),
+                        Objects.requireNonNullElse(teacherPatchDTO.lastname(), cached.get().lastname()),
+                        Objects.requireNonNullElse(teacherPatchDTO.vat(), cached.get().vat()),
+                        teacherPatchDTO.version() + 1, changedAt)
+                    : teacherDAO.getProjectionById(TeacherReadOnlyDTO.class, Mapper.TEACHER_READ_ONLY_FIELDS, id)
+                        .orElseThrow(() -> new EntityNotFoundException("Teacher", "Teacher with id " + id + " not found"));
             JPAHelper.commitTransaction();
-        } catch (EntityNotFoundException e) {
+            afterUpdate(teacherReadOnlyDTO, changedAt, generation);
+            LOGGER.info("Teacher with id={} patched successfully, fields={}", id, fields.keySet());
+            return teacherReadOnlyDTO;
+        } catch (EntityNotFoundException | EntityOutdatedException e) {
             JPAHelper.rollbackTransaction();
-            LOGGER.error("Teacher with id={} was not found to delete", id);
+            LOGGER.error("Error. Teacher with id={} not patched.", id);
             throw e;
+        } catch (PersistenceException e) {
+            JPAHelper.rollbackTransaction();
+            if (!JPAHelper.isUniqueViolation(e)) throw e;
+            LOGGER.error("Teacher with id={} not patched, vat={} already exists.", id, teacherPatchDTO.vat());
+            throw new EntityAlreadyExistsException("Teacher", "Teacher with vat " + teacherPatchDTO.vat() + " already exists");
         } finally {
             JPAHelper.closeEntityManager();
         }
     }
 
     @Override
-    public TeacherReadOnlyDTO getTeacherById(Long id) throws EntityNotFoundException {
+    public TeacherReadOnlyDTO deleteTeacher(Long id, Long version) throws EntityNotFoundException, EntityOutdatedException {
+        TeacherReadOnlyDTO deleted;
+        try {
+            LocalDateTime deletedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            JPAHelper.beginTransaction();
+            // The row is deleted at the version read here, so the returned body is exactly the deleted row.
+            // Without a version a write landing between the two statements answers 409 instead of deleting unseen data.
+            deleted = teacherDAO.getProjectionById(TeacherReadOnlyDTO.class, Mapper.TEACHER_READ_ONLY_FIELDS, id)
+                    .orElseThrow(() -> new EntityNotFoundException("Teacher", "Teacher with id " + id + " not found"));
+            if (version != null && !version.equals(deleted.version())) {
+                throw new EntityOutdatedException("Teacher", "Teacher with id " + id + " was changed, version " + version + " is outdated");
+            }
+            requireWritten(teacherDAO.deleteByIdAndVersion(id, deleted.version()), id, deleted.version());
+            tombstoneDAO.insert(new TeacherTombstone(id, deletedAt));
+            JPAHelper.commitTransaction();
+            teacherCache.evict(id);
+            teacherCache.evictCounts();
+            searchIndex.remove(id);
+            changeBroadcaster.publish(toChange(ChangeType.DELETE, id, null, deletedAt));
+        } catch (EntityNotFoundException | EntityOutdatedException e) {
+            JPAHelper.rollbackTransaction();
+            LOGGER.error("Teacher with id={} was not deleted", id);
+            throw e;
+        } finally {
+            JPAHelper.closeEntityManager();
+        }
+        purgeExpiredTombstones();
+        return deleted;
+    }
+
+    // Every delete adds a tombstone, so deletes also purge the expired ones, at most once per interval
+    private void purgeExpiredTombstones() {
+        long now = System.currentTimeMillis();
+        long next = nextTombstonePurgeMillis.get();
+        if (now < next || !nextTombstonePurgeMillis.compareAndSet(next, now + TOMBSTONE_PURGE_INTERVAL_MILLIS)) return;
         try {
             JPAHelper.beginTransaction();
-            TeacherReadOnlyDTO readOnlyDTO = teacherDAO.getById(id).map(Mapper::mapToReadOnlyDTO).orElseThrow(()-> new EntityNotFoundException("Teacher", "Teacher with id " + id + " not found."));
+            int purged = tombstoneDAO.deleteDeletedBefore(LocalDateTime.now().minus(CHANGES_RETENTION));
             JPAHelper.commitTransaction();
+            if (purged > 0) LOGGER.info("{} teacher tombstones older than {} purged.", purged, CHANGES_RETENTION);
+        } catch (PersistenceException e) {
+            JPAHelper.rollbackTransaction();
+            LOGGER.warn("Teacher tombstones not purged, a later delete retries.", e);
+        } finally {
+            JPAHelper.closeEntityManager();
+        }
+    }
+
+    // Only a failed write pays for the extra query that tells a missing row from a stale version
+    // The vat places a teacher on its shard, a vat that belongs to another shard would orphan the row there
+    private void requireSameShard(Long id, String vat) throws EntityInvalidArgumentException {
+        if (!teacherDAO.isShardKeyCompatible(id, vat)) {
+            throw new EntityInvalidArgumentException("Teacher", "Vat " + vat + " belongs to another shard than teacher " + id
+                    + ", delete and re-insert the teacher instead");
+        }
+    }
+
+    private void requireWritten(int rows, Long id, Long version) throws EntityNotFoundException, EntityOutdatedException {
+        if (rows > 0) return;
+        if (teacherDAO.getCountByCriteria(Map.of("id", id)) == 0) {
+            throw new EntityNotFoundException("Teacher", "Teacher with id " + id + " not found");
+        }
+        throw new EntityOutdatedException("Teacher", "Teacher with id " + id + " was changed, version " + version + " is outdated");
+    }
+
+    private void afterUpdate(TeacherReadOnlyDTO teacherReadOnlyDTO, LocalDateTime changedAt, long generation) {
+        teacherCache.put(teacherReadOnlyDTO, generation);
+        teacherCache.evictCounts();
+        searchIndex.put(teacherReadOnlyDTO);
+        changeBroadcaster.publish(toChange(ChangeType.UPDATE, teacherReadOnlyDTO.id(), teacherReadOnlyDTO, changedAt));
+    }
+
+    // The token is the (changedAt, id) position of the change, encoded like the keyset cursors
+    private static TeacherChangeDTO toChange(ChangeType type, Long id, TeacherReadOnlyDTO teacher, LocalDateTime changedAt) {
+        String token = CursorUtil.encode(String.valueOf(ChronoUnit.MICROS.between(EPOCH, changedAt)), id);
+        return new TeacherChangeDTO(type, id, teacher, changedAt.toString(), token);
+    }
+
+    @Override
+    public TeacherReadOnlyDTO getTeacherById(Long id) throws EntityNotFoundException {
+        Optional<TeacherReadOnlyDTO> cached = teacherCache.getById(id);
+        if (cached.isPresent()) return cached.get();
+        return teacherByIdFlight.execute(id, () -> loadTeacherById(id));
+    }
+
+    private TeacherReadOnlyDTO loadTeacherById(Long id) throws EntityNotFoundException {
+        long generation = teacherCache.rowsGeneration();
+        try {
+            JPAHelper.beginReadOnlyTransaction();
+            TeacherReadOnlyDTO readOnlyDTO = teacherDAO.getProjectionById(TeacherReadOnlyDTO.class, Mapper.TEACHER_READ_ONLY_FIELDS, id)
+                    .orElseThrow(()-> new EntityNotFoundException("Teacher", "Teacher with id " + id + " not found."));
+            JPAHelper.commitTransaction();
+            teacherCache.putIfCurrent(readOnlyDTO, generation);
             return readOnlyDTO;
         } catch (EntityNotFoundException e) {
             JPAHelper.rollbackTransaction();
@@ -103,9 +351,15 @@ public class TeacherServiceImpl implements ITeacherService {
 
     @Override
     public List<TeacherReadOnlyDTO> getTeachersByCriteria(Map<String, Object> criteria) {
+        // The write generation in the key keeps a caller from joining a query that started before a write it has seen
+        String key = teacherCache.countsGeneration() + "|" + TeacherCache.criteriaKey(criteria);
+        return teachersByCriteriaFlight.execute(key, () -> loadTeachersByCriteria(criteria));
+    }
+
+    private List<TeacherReadOnlyDTO> loadTeachersByCriteria(Map<String, Object> criteria) {
         try {
-            JPAHelper.beginTransaction();
-            List<TeacherReadOnlyDTO> teacherReadOnlyDTOS = Mapper.mapToTeacherReadOnlyDTOs(teacherDAO.getByCriteria(Teacher.class, criteria));
+            JPAHelper.beginReadOnlyTransaction();
+            List<TeacherReadOnlyDTO> teacherReadOnlyDTOS = teacherDAO.getProjectionByCriteria(TeacherReadOnlyDTO.class, Mapper.TEACHER_READ_ONLY_FIELDS, criteria);
             JPAHelper.commitTransaction();
             return teacherReadOnlyDTOS;
         } finally {
@@ -116,8 +370,8 @@ public class TeacherServiceImpl implements ITeacherService {
     @Override
     public List<TeacherReadOnlyDTO> getAllTeachers() {
         try {
-            JPAHelper.beginTransaction();
-            List<TeacherReadOnlyDTO> readOnlyDTOS =  Mapper.mapToTeacherReadOnlyDTOs(teacherDAO.getAll());
+            JPAHelper.beginReadOnlyTransaction();
+            List<TeacherReadOnlyDTO> readOnlyDTOS = teacherDAO.getProjectionByCriteria(TeacherReadOnlyDTO.class, Mapper.TEACHER_READ_ONLY_FIELDS, Collections.emptyMap());
             JPAHelper.commitTransaction();
             return readOnlyDTOS;
         } finally {
@@ -128,25 +382,232 @@ public class TeacherServiceImpl implements ITeacherService {
 
     @Override
     public long getTeachersCountByCriteria(Map<String, Object> criteria) {
+        return getTeachersCount(criteria, false).count();
+    }
+
+    @Override
+    public CountDTO getTeachersCount(Map<String, Object> criteria, boolean approximate) {
+        // An exact cached count answers both modes, an approximate one only approximate requests
+        Optional<CountDTO> cached = teacherCache.getCount(criteria);
+        if (cached.isPresent() && (approximate || !cached.get().approximate())) return cached.get();
+
+        long generation = teacherCache.countsGeneration();
+        CountDTO count;
         try {
-            JPAHelper.beginTransaction();
-            long count = teacherDAO.getCountByCriteria(criteria);
+            JPAHelper.beginReadOnlyTransaction();
+            if (approximate) {
+                long capped = teacherDAO.getCappedCountByCriteria(criteria, APPROXIMATE_COUNT_CAP);
+                count = capped > APPROXIMATE_COUNT_CAP ? new CountDTO(APPROXIMATE_COUNT_CAP, true) : new CountDTO(capped, false);
+            } else {
+                count = new CountDTO(teacherDAO.getCountByCriteria(criteria), false);
+            }
             JPAHelper.commitTransaction();
-            return count;
         } finally {
             JPAHelper.closeEntityManager();
         }
+        teacherCache.putCount(criteria, count, generation);
+        return count;
     }
 
     @Override
-    public List<TeacherReadOnlyDTO> getTeachersByCriteriaPaginated(Map<String, Object> criteria, Integer page, Integer size) {
+    public List<TeacherReadOnlyDTO> getTeachersByCriteriaPaginated(Map<String, Object> criteria, Integer page, Integer size)
+            throws EntityInvalidArgumentException {
         try {
-            JPAHelper.beginTransaction();
-            List<TeacherReadOnlyDTO> readOnlyDTOS = Mapper.mapToTeacherReadOnlyDTOs(teacherDAO.getByCriteriaPaginated(Teacher.class, criteria, page, size));
+            JPAHelper.beginReadOnlyTransaction();
+            List<TeacherReadOnlyDTO> readOnlyDTOS = teacherDAO.getProjectionByCriteriaPaginated(TeacherReadOnlyDTO.class, Mapper.TEACHER_READ_ONLY_FIELDS, criteria, page, size);
             JPAHelper.commitTransaction();
             return readOnlyDTOS;
+        } catch (IllegalArgumentException e) {
+            // A page too deep to gather from every shard
+            JPAHelper.rollbackTransaction();
+            throw new EntityInvalidArgumentException("Teacher", e.getMessage());
+        } finally {
+            JPAHelper.closeEntityManager();
+        }
+    }
+
+    @Override
+    public PaginatedResult<TeacherReadOnlyDTO> getTeachersPage(Map<String, Object> criteria, Integer page, Integer size)
+            throws EntityInvalidArgumentException {
+        Optional<CountDTO> cached = teacherCache.getCount(criteria).filter(count -> !count.approximate());
+        long generation = teacherCache.countsGeneration();
+        try {
+            JPAHelper.beginReadOnlyTransaction();
+            List<TeacherReadOnlyDTO> readOnlyDTOS;
+            long total;
+            if (cached.isPresent()) {
+                // The total is already known, only the page is needed
+                readOnlyDTOS = teacherDAO.getProjectionByCriteriaPaginated(TeacherReadOnlyDTO.class, Mapper.TEACHER_READ_ONLY_FIELDS, criteria, page, size);
+                total = cached.get().count();
+            } else {
+                List<Object[]> rows = teacherDAO.getFieldsByCriteriaPaginatedWithTotal(Mapper.TEACHER_READ_ONLY_FIELDS, criteria, page, size);
+                readOnlyDTOS = rows.stream().map(Mapper::mapToReadOnlyDTO).collect(Collectors.toList());
+                // A page past the end has no row to carry the window count
+                total = rows.isEmpty() ? teacherDAO.getCountByCriteria(criteria) : (Long) rows.get(0)[Mapper.TEACHER_READ_ONLY_FIELDS.size()];
+            }
+            JPAHelper.commitTransaction();
+            CountDTO count = new CountDTO(total, false);
+            if (cached.isEmpty()) teacherCache.putCount(criteria, count, generation);
+            return new PaginatedResult<>(readOnlyDTOS, page, size, count);
+        } catch (IllegalArgumentException e) {
+            // A page too deep to gather from every shard
+            JPAHelper.rollbackTransaction();
+            throw new EntityInvalidArgumentException("Teacher", e.getMessage());
+        } finally {
+            JPAHelper.closeEntityManager();
+        }
+    }
+
+    @Override
+    public PaginatedResult<TeacherReadOnlyDTO> getTeachersByCriteriaKeyset(Map<String, Object> criteria, String cursor, Integer size)
+            throws EntityInvalidArgumentException {
+        KeysetCursor after = null;
+        if (cursor != null && !cursor.isBlank()) {
+            after = CursorUtil.decode(cursor).orElseThrow(() -> new EntityInvalidArgumentException("Teacher", "Invalid cursor " + cursor));
+        }
+        try {
+            JPAHelper.beginReadOnlyTransaction();
+            // One extra row tells us whether a next page exists without a COUNT
+            List<Teacher> teachers = teacherDAO.getByCriteriaKeyset(Teacher.class, criteria, "lastname",
+                    after == null ? null : after.sortValue(), after == null ? null : after.id(), size + 1);
+            JPAHelper.commitTransaction();
+            String nextCursor = null;
+            if (teachers.size() > size) {
+                teachers = teachers.subList(0, size);
+                Teacher last = teachers.get(size - 1);
+                nextCursor = CursorUtil.encode(last.getLastname(), last.getId());
+            }
+            return PaginatedResult.ofCursor(Mapper.mapToTeacherReadOnlyDTOs(teachers), size, nextCursor);
+        } finally {
+            JPAHelper.closeEntityManager();
+        }
+    }
+
+    @Override
+    public void exportTeachers(Map<String, Object> criteria, Consumer<TeacherReadOnlyDTO> consumer) {
+        try {
+            JPAHelper.beginReadOnlyTransaction();
+            teacherDAO.forEachByCriteria(Teacher.class, criteria, EXPORT_FETCH_SIZE,
+                    teacher -> consumer.accept(Mapper.mapToReadOnlyDTO(teacher)));
+            JPAHelper.commitTransaction();
         } finally {
             JPAHelper.closeEntityManager();
         }
     }
+
+    @Override
+    public List<CacheStatsDTO> getCacheStats() {
+        return teacherCache.stats();
+    }
+
+    @Override
+    public ResourceVersionDTO getTeachersVersion(Map<String, Object> criteria) {
+        try {
+            JPAHelper.beginReadOnlyTransaction();
+            Object[] countAndLastModified = teacherDAO.getCountAndLastModifiedByCriteria(criteria);
+            JPAHelper.commitTransaction();
+            return new ResourceVersionDTO((Long) countAndLastModified[0], (LocalDateTime) countAndLastModified[1]);
+        } finally {
+            JPAHelper.closeEntityManager();
+        }
+    }
+
+    @Override
+    public List<TeacherReadOnlyDTO> searchTeachers(String query, int limit) {
+        if (!searchIndex.isReady()) rebuildSearchIndex();
+        List<Long> ids = searchIndex.search(query, limit);
+        if (ids.isEmpty()) return List.of();
+
+        Map<Long, TeacherReadOnlyDTO> teachers = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            teacherCache.getById(id).ifPresentOrElse(dto -> teachers.put(id, dto), () -> missing.add(id));
+        }
+        if (!missing.isEmpty()) {
+            long generation = teacherCache.rowsGeneration();
+            try {
+                JPAHelper.beginReadOnlyTransaction();
+                List<TeacherReadOnlyDTO> fetched = teacherDAO.getProjectionByCriteria(TeacherReadOnlyDTO.class, Mapper.TEACHER_READ_ONLY_FIELDS, Map.of("id", missing));
+                JPAHelper.commitTransaction();
+                for (TeacherReadOnlyDTO dto : fetched) {
+                    teachers.put(dto.id(), dto);
+                    teacherCache.putIfCurrent(dto, generation);
+                }
+            } finally {
+                JPAHelper.closeEntityManager();
+            }
+        }
+        // Keep the ranking of the index
+        return ids.stream().map(teachers::get).filter(Objects::nonNull).toList();
+    }
+
+    @Override
+    public void rebuildSearchIndex() {
+        searchIndexFlight.execute("teachers", () -> {
+            int size = searchIndex.rebuild(this::getAllTeachers);
+            LOGGER.info("Teacher search index built with {} teachers.", size);
+            return size;
+        });
+    }
+
+    void buildSearchIndexOnStartup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+        try {
+            rebuildSearchIndex();
+        } catch (RuntimeException e) {
+            // Not fatal, the first search retries
+            LOGGER.error("Teacher search index not built on startup.", e);
+        }
+    }
+
+    @Override
+    public TeacherChangesDTO getTeacherChanges(String since, int limit) throws EntityInvalidArgumentException {
+        LocalDateTime afterTime = null;
+        Long afterId = null;
+        if (since != null && !since.isBlank()) {
+            KeysetCursor after = CursorUtil.decode(since).orElseThrow(() -> new EntityInvalidArgumentException("Teacher", "Invalid change token " + since));
+            try {
+                afterTime = EPOCH.plus(Long.parseLong(after.sortValue()), ChronoUnit.MICROS);
+                afterId = after.id();
+            } catch (NumberFormatException | NullPointerException e) {
+                throw new EntityInvalidArgumentException("Teacher", "Invalid change token " + since);
+            }
+            if (afterTime.isBefore(LocalDateTime.now().minus(CHANGES_RETENTION))) {
+                throw new EntityInvalidArgumentException("Teacher", "Change token " + since + " is older than the "
+                        + CHANGES_RETENTION.toHours() + " hour retention, resync from the full list");
+            }
+        }
+        LocalDateTime until = LocalDateTime.now().minus(CHANGES_SETTLE_MILLIS, ChronoUnit.MILLIS);
+
+        record Change(LocalDateTime changedAt, TeacherChangeDTO dto) {}
+        List<Change> changes = new ArrayList<>();
+        try {
+            JPAHelper.beginReadOnlyTransaction();
+            // Both sides are read in (timestamp, id) order from their indexes, limit + 1 each is enough to merge a page
+            List<Teacher> teachers = teacherDAO.getByCriteriaKeyset(Teacher.class, Map.of("updatedAt", Map.of("from", EPOCH, "to", until)),
+                    "updatedAt", afterTime, afterId, limit + 1);
+            List<TeacherTombstone> tombstones = tombstoneDAO.getByCriteriaKeyset(TeacherTombstone.class, Map.of("deletedAt", Map.of("from", EPOCH, "to", until)),
+                    "deletedAt", afterTime, afterId, limit + 1);
+            JPAHelper.commitTransaction();
+            for (Teacher teacher : teachers) {
+                ChangeType type = teacher.getUpdatedAt().equals(teacher.getCreatedAt()) ? ChangeType.INSERT : ChangeType.UPDATE;
+                changes.add(new Change(teacher.getUpdatedAt(), toChange(type, teacher.getId(), Mapper.mapToReadOnlyDTO(teacher), teacher.getUpdatedAt())));
+            }
+            for (TeacherTombstone tombstone : tombstones) {
+                changes.add(new Change(tombstone.getDeletedAt(), toChange(ChangeType.DELETE, tombstone.getId(), null, tombstone.getDeletedAt())));
+            }
+        } finally {
+            JPAHelper.closeEntityManager();
+        }
+
+        changes.sort(Comparator.comparing(Change::changedAt).thenComparing(change -> change.dto().id()));
+        boolean hasMore = changes.size() > limit;
+        List<TeacherChangeDTO> page = changes.stream().limit(limit).map(Change::dto).toList();
+        String nextToken = page.isEmpty() ? since : page.get(page.size() - 1).token();
+        return new TeacherChangesDTO(page, nextToken, hasMore);
+    }
+
+    @Override
+    public void subscribeToTeacherChanges(TeacherChangeBroadcaster.ChangeListener listener) {
+        changeBroadcaster.subscribe(listener);
+    }
 }
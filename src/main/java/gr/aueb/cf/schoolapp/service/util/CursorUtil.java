@@ -0,0 +1,32 @@
+package gr.aueb.cf.schoolapp.service.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+public class CursorUtil {
+
+    private CursorUtil() {
+    }
+
+    // "id:value" for a value, "id" alone for a null sort value, so a null stays a position to seek from
+    public static String encode(String sortValue, Long id) {
+        String raw = sortValue == null ? String.valueOf(id) : id + ":" + sortValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Optional<KeysetCursor> decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            if (separator == 0) return Optional.empty();
+            if (separator < 0) return Optional.of(new KeysetCursor(null, Long.valueOf(raw)));
+            Long id = Long.valueOf(raw.substring(0, separator));
+            return Optional.of(new KeysetCursor(raw.substring(separator + 1), id));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    public record KeysetCursor(String sortValue, Long id) {}
+}
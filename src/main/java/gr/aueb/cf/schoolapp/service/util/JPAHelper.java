@@ -2,66 +2,312 @@ package gr.aueb.cf.schoolapp.service.util;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import gr.aueb.cf.schoolapp.core.diagnostics.QueryDiagnostics;
+import gr.aueb.cf.schoolapp.core.metrics.HikariMetricsTrackerFactory;
+import gr.aueb.cf.schoolapp.service.util.PersistenceScope.TransactionMode;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.FlushModeType;
 import jakarta.persistence.Persistence;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 public class JPAHelper {
-    private static EntityManagerFactory emf;
-    private static final ThreadLocal<EntityManager> threadLocal = new ThreadLocal<>();
+    private static final Logger LOGGER = LoggerFactory.getLogger(JPAHelper.class);
+    // Read by ShardedSequenceGenerator to stamp generated ids with their shard
+    public static final String SHARD_INDEX_PROPERTY = "school7.shard.index";
+
+    private static final EntityManagerFactory[] emfs = new EntityManagerFactory[ShardRouter.shardCount()];
+    private static EntityManagerFactory replicaEmf;
 
     private static final HikariConfig config = new HikariConfig();
-    private static final Map<String, Object> properties = new HashMap<>();
+    private static final List<Map<String, Object>> shardProperties = new ArrayList<>();
+    private static final Map<String, Object> replicaProperties = new HashMap<>();
+    private static final ExecutorService scatterExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("shard-query-", 0).factory());
+
+    // Reads go to the primary for this long after a local write, so callers see their own changes
+    private static final long replicaMaxStalenessMillis;
+    private static volatile long lastWriteMillis;
 
     static {
-        config.setJdbcUrl(System.getenv("SCHOOL7_DB_HOST") + ":" + System.getenv("SCHOOL7_DB_PORT") +
+        // SCHOOL7_DB_URL (env or system property) overrides the MySQL url, e.g. an in-memory H2 database for benchmarks
+        config.setJdbcUrl(envOrDefault("SCHOOL7_DB_URL", System.getenv("SCHOOL7_DB_HOST") + ":" + System.getenv("SCHOOL7_DB_PORT") +
+                "/" + System.getenv("SCHOOL_DB_DATABASE") + "?serverTimezone=UTC&rewriteBatchedStatements=true"));
+        config.setUsername(envOrDefault("SCHOOL7_DB_USERNAME", null));
+        config.setPassword(envOrDefault("SCHOOL7_DB_PASSWORD", null));
+        config.setPoolName("school7-primary");
+        config.setMetricsTrackerFactory(new HikariMetricsTrackerFactory());
+        // With virtual threads the pool, not the thread count, bounds how many requests reach the database
+        config.setMaximumPoolSize(Integer.parseInt(envOrDefault("SCHOOL7_DB_POOL_SIZE", "10")));
+
+        if (!ShardRouter.isSharded()) {
+            Map<String, Object> properties = new HashMap<>();
+            properties.put("hibernate.connection.datasource", new HikariDataSource(config));
+            shardProperties.add(properties);
+        } else {
+            // One pool per shard, each the size of the primary pool
+            for (int shard = 0; shard < ShardRouter.shardCount(); shard++) {
+                HikariConfig shardConfig = new HikariConfig();
+                config.copyStateTo(shardConfig);
+                shardConfig.setJdbcUrl(ShardRouter.shardUrl(shard));
+                shardConfig.setPoolName("school7-shard-" + shard);
+
+                Map<String, Object> properties = new HashMap<>();
+                properties.put("hibernate.connection.datasource", new HikariDataSource(shardConfig));
+                properties.put(SHARD_INDEX_PROPERTY, Integer.toString(shard));
+                shardProperties.add(properties);
+            }
+        }
+
+        String replicaHost = envOrDefault("SCHOOL7_DB_REPLICA_HOST", null);
+        String replicaUrl = envOrDefault("SCHOOL7_DB_REPLICA_URL", replicaHost == null ? null :
+                replicaHost + ":" + envOrDefault("SCHOOL7_DB_REPLICA_PORT", System.getenv("SCHOOL7_DB_PORT")) +
                 "/" + System.getenv("SCHOOL_DB_DATABASE") + "?serverTimezone=UTC");
-        config.setUsername(System.getenv("SCHOOL7_DB_USERNAME"));
-        config.setPassword(System.getenv("SCHOOL7_DB_PASSWORD"));
+        if (replicaUrl != null && ShardRouter.isSharded()) {
+            LOGGER.warn("Read replica ignored, it is only supported without SCHOOL7_SHARD_URLS.");
+        } else if (replicaUrl != null) {
+            HikariConfig replicaConfig = new HikariConfig();
+            replicaConfig.setPoolName("school7-replica");
+            replicaConfig.setJdbcUrl(replicaUrl);
+            replicaConfig.setUsername(envOrDefault("SCHOOL7_DB_REPLICA_USERNAME", config.getUsername()));
+            replicaConfig.setPassword(envOrDefault("SCHOOL7_DB_REPLICA_PASSWORD", config.getPassword()));
+            replicaConfig.setReadOnly(true);
+            replicaConfig.setMetricsTrackerFactory(config.getMetricsTrackerFactory());
 
-        DataSource dataSource = new HikariDataSource(config);
-        properties.put("hibernate.connection.datasource", dataSource);
+            replicaProperties.put("hibernate.connection.datasource", new HikariDataSource(replicaConfig));
+            // The schema is owned by the primary
+            replicaProperties.put("hibernate.hbm2ddl.auto", "none");
+        }
+        replicaMaxStalenessMillis = Long.parseLong(envOrDefault("SCHOOL7_DB_REPLICA_MAX_STALENESS_MS", "1000"));
     }
 
     private JPAHelper() {
     }
 
     public static EntityManagerFactory getEntityManagerFactory() {
-        if (emf == null || !emf.isOpen()) emf = Persistence.createEntityManagerFactory("school7DBContext", properties);
-        return emf;
+        return getEntityManagerFactory(0);
     }
 
+    public static synchronized EntityManagerFactory getEntityManagerFactory(int shard) {
+        if (emfs[shard] == null || !emfs[shard].isOpen()) {
+            emfs[shard] = Persistence.createEntityManagerFactory("school7DBContext", shardProperties.get(shard));
+            // After the schema update, before the first insert
+            TeacherSequenceMigration.seedPastExistingIds((DataSource) shardProperties.get(shard).get("hibernate.connection.datasource"),
+                    ShardRouter.isSharded());
+        }
+        return emfs[shard];
+    }
+
+    // Synchronized like the shard factories: concurrent first reads would otherwise each build a factory and leak all but one
+    public static synchronized EntityManagerFactory getReplicaEntityManagerFactory() {
+        if (replicaProperties.isEmpty()) return getEntityManagerFactory();
+        if (replicaEmf == null || !replicaEmf.isOpen()) replicaEmf = Persistence.createEntityManagerFactory("school7DBContext", replicaProperties);
+        return replicaEmf;
+    }
+
+    // The EntityManager of the current shard (shard 0 unless inside onShard/onAllShards). Inside a transaction
+    // its shard transaction is started on first use, so a unit of work only holds connections to the shards it touches.
     public static EntityManager getEntityManager() {
-        EntityManager em = threadLocal.get();
+        PersistenceScope scope = PersistenceScope.current();
+        int shard = PersistenceScope.currentShard();
+        EntityManager em = scope.getEntityManager(shard);
         if (em == null || !em.isOpen()) {
-            em = getEntityManagerFactory().createEntityManager();
-            threadLocal.set(em);
+            em = createEntityManager(shard, scope.getTransactionMode() == TransactionMode.READ_ONLY);
+            scope.setEntityManager(shard, em);
+        }
+        if (scope.getTransactionMode() != TransactionMode.NONE && !em.getTransaction().isActive()) {
+            em.getTransaction().begin();
         }
         return em;
     }
 
     public static void closeEntityManager() {
-        getEntityManager().close();
-        threadLocal.remove();
+        PersistenceScope scope = PersistenceScope.current();
+        for (EntityManager em : scope.getEntityManagers()) {
+            if (em.isOpen()) em.close();
+        }
+        scope.close();
     }
 
     public static void beginTransaction() {
-        getEntityManager().getTransaction().begin();
+        PersistenceScope.current().setTransactionMode(TransactionMode.READ_WRITE);
+        getEntityManager();
+    }
+
+    public static void beginReadOnlyTransaction() {
+        PersistenceScope scope = PersistenceScope.current();
+        // An EntityManager already open in this scope keeps its settings
+        if (scope.getTransactionMode() == TransactionMode.NONE) scope.setTransactionMode(TransactionMode.READ_ONLY);
+        getEntityManager();
     }
 
+    // Shards commit one after the other: a unit of work that wrote to several shards is not atomic across them
     public static void commitTransaction() {
-        getEntityManager().getTransaction().commit();
+        PersistenceScope scope = PersistenceScope.current();
+        scope.setTransactionMode(TransactionMode.NONE);
+        for (EntityManager em : scope.getEntityManagers()) {
+            if (!em.isOpen() || !em.getTransaction().isActive()) continue;
+            em.getTransaction().commit();
+            if (!em.unwrap(Session.class).isDefaultReadOnly()) {
+                lastWriteMillis = System.currentTimeMillis();
+            }
+        }
     }
 
     public static void rollbackTransaction() {
-        getEntityManager().getTransaction().rollback();
+        PersistenceScope scope = PersistenceScope.current();
+        scope.setTransactionMode(TransactionMode.NONE);
+        for (EntityManager em : scope.getEntityManagers()) {
+            if (em.isOpen() && em.getTransaction().isActive()) em.getTransaction().rollback();
+        }
+    }
+
+    public static <R> R onShard(int shard, Supplier<R> work) {
+        return PersistenceScope.onShard(shard, work);
+    }
+
+    // Runs work once per shard, in parallel, and returns the results in shard order. The EntityManagers
+    // (and transactions) are opened here on the calling thread; each worker only uses the one of its shard.
+    // The workers' statements count towards the calling request in QueryDiagnostics.
+    public static <R> List<R> onAllShards(Supplier<R> work) {
+        int shards = ShardRouter.shardCount();
+        List<R> results = new ArrayList<>(shards);
+        if (shards == 1) {
+            results.add(onShard(0, work));
+            return results;
+        }
+
+        PersistenceScope scope = PersistenceScope.current();
+        Supplier<R> tracked = QueryDiagnostics.wrap(work);
+        List<Future<R>> futures = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            onShard(shard, JPAHelper::getEntityManager);
+        }
+        for (int shard = 0; shard < shards; shard++) {
+            int target = shard;
+            futures.add(scatterExecutor.submit(() -> scope.callOnShard(target, tracked)));
+        }
+        try {
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Holds minimumIdle connections of every pool at once, so each pool opens them now instead of on first use.
+    // Returns how many connections were opened.
+    public static int fillConnectionPools() {
+        List<Object> dataSources = new ArrayList<>();
+        shardProperties.forEach(properties -> dataSources.add(properties.get("hibernate.connection.datasource")));
+        if (!replicaProperties.isEmpty()) dataSources.add(replicaProperties.get("hibernate.connection.datasource"));
+
+        int opened = 0;
+        for (Object dataSource : dataSources) {
+            HikariDataSource pool = (HikariDataSource) dataSource;
+            List<Connection> connections = new ArrayList<>();
+            try {
+                for (int i = 0; i < pool.getMinimumIdle(); i++) connections.add(pool.getConnection());
+                opened += connections.size();
+            } catch (SQLException e) {
+                throw new IllegalStateException("Pool " + pool.getPoolName() + " could not be filled", e);
+            } finally {
+                for (Connection connection : connections) {
+                    try {
+                        connection.close();
+                    } catch (SQLException e) {
+                        LOGGER.warn("Warm-up connection of pool {} not returned cleanly.", pool.getPoolName(), e);
+                    }
+                }
+            }
+        }
+        return opened;
+    }
+
+    public static synchronized void closeEMF() {
+        for (EntityManagerFactory emf : emfs) {
+            if (emf != null) emf.close();
+        }
+        if (replicaEmf != null) replicaEmf.close();
+    }
+
+    // MySQL reports duplicate keys as error 1062, standard SQL (H2, PostgreSQL) as SQLState 23505
+    public static boolean isUniqueViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return violation.getKind() == ConstraintViolationException.ConstraintKind.UNIQUE
+                        || violation.getErrorCode() == 1062
+                        || "23505".equals(violation.getSQLState());
+            }
+        }
+        return false;
+    }
+
+    // The JDBC fetch size for a query that streams a large result. MySQL Connector/J otherwise reads the whole
+    // result into memory whatever the fetch size; Integer.MIN_VALUE streams it row by row on that one statement,
+    // where useCursorFetch on the url would turn every statement into a server-side prepared one.
+    public static int streamingFetchSize(EntityManager em, int fetchSize) {
+        return isMySQL(em) ? Integer.MIN_VALUE : fetchSize;
+    }
+
+    // How the database orders text. The MySQL default collation, utf8mb4_0900_ai_ci, ignores case and accents like
+    // a root Collator at primary strength; H2 without a COLLATION setting compares the strings as Java does.
+    public static Comparator<String> textOrder(EntityManager em) {
+        if (!isMySQL(em)) return Comparator.naturalOrder();
+        Collator collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.PRIMARY);
+        return collator::compare;
+    }
+
+    private static boolean isMySQL(EntityManager em) {
+        return em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect() instanceof MySQLDialect;
+    }
+
+    private static EntityManager createEntityManager(int shard, boolean readOnly) {
+        if (!readOnly) return getEntityManagerFactory(shard).createEntityManager();
+
+        EntityManager em = (shard == 0 && isReplicaFresh() ? getReplicaEntityManagerFactory() : getEntityManagerFactory(shard)).createEntityManager();
+        em.setFlushMode(FlushModeType.COMMIT);
+        Session session = em.unwrap(Session.class);
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        return em;
+    }
+
+    private static boolean isReplicaFresh() {
+        return System.currentTimeMillis() - lastWriteMillis >= replicaMaxStalenessMillis;
     }
 
-    public static void closeEMF() {
-        emf.close();
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getProperty(name, System.getenv(name));
+        return value == null || value.isBlank() ? defaultValue : value;
     }
 }
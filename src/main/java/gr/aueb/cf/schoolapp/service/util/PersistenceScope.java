@@ -0,0 +1,132 @@
+package gr.aueb.cf.schoolapp.service.util;
+
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Holds the EntityManagers of one unit of work (a request), one per shard it touched. A scope opened with
+// call()/wrap() is bound only for the duration of the task and always closes what it holds, with the same shape
+// as java.lang.ScopedValue (still a preview API on JDK 21) so the carrier can be swapped without touching callers.
+// Code running outside an explicit scope gets an implicit one that lives until JPAHelper.closeEntityManager().
+public class PersistenceScope {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistenceScope.class);
+    private static final ThreadLocal<PersistenceScope> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    enum TransactionMode { NONE, READ_WRITE, READ_ONLY }
+
+    private final boolean implicit;
+    private final Map<Integer, EntityManager> entityManagers = new ConcurrentHashMap<>();
+    private volatile TransactionMode transactionMode = TransactionMode.NONE;
+
+    private PersistenceScope(boolean implicit) {
+        this.implicit = implicit;
+    }
+
+    public static <T> T call(Callable<T> task) throws Exception {
+        PersistenceScope previous = CURRENT.get();
+        PersistenceScope scope = new PersistenceScope(false);
+        CURRENT.set(scope);
+        try {
+            return task.call();
+        } finally {
+            scope.release();
+            if (previous == null) CURRENT.remove(); else CURRENT.set(previous);
+        }
+    }
+
+    public static Runnable wrap(Runnable task) {
+        return () -> {
+            try {
+                call(() -> {
+                    task.run();
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    static PersistenceScope current() {
+        PersistenceScope scope = CURRENT.get();
+        if (scope == null) {
+            scope = new PersistenceScope(true);
+            CURRENT.set(scope);
+        }
+        return scope;
+    }
+
+    static int currentShard() {
+        Integer shard = CURRENT_SHARD.get();
+        return shard == null ? 0 : shard;
+    }
+
+    static <R> R onShard(int shard, Supplier<R> work) {
+        Integer previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) CURRENT_SHARD.remove(); else CURRENT_SHARD.set(previous);
+        }
+    }
+
+    // Runs work on another thread against this scope's EntityManager of one shard, which the owning thread
+    // leaves alone until the work completes
+    <R> R callOnShard(int shard, Supplier<R> work) {
+        PersistenceScope previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return onShard(shard, work);
+        } finally {
+            if (previous == null) CURRENT.remove(); else CURRENT.set(previous);
+        }
+    }
+
+    EntityManager getEntityManager(int shard) {
+        return entityManagers.get(shard);
+    }
+
+    void setEntityManager(int shard, EntityManager entityManager) {
+        entityManagers.put(shard, entityManager);
+    }
+
+    Collection<EntityManager> getEntityManagers() {
+        return entityManagers.values();
+    }
+
+    TransactionMode getTransactionMode() {
+        return transactionMode;
+    }
+
+    void setTransactionMode(TransactionMode transactionMode) {
+        this.transactionMode = transactionMode;
+    }
+
+    void close() {
+        entityManagers.clear();
+        transactionMode = TransactionMode.NONE;
+        if (implicit) CURRENT.remove();
+    }
+
+    // Safety net for code paths that forgot their finally block
+    private void release() {
+        for (EntityManager entityManager : entityManagers.values()) {
+            if (entityManager.isOpen()) {
+                LOGGER.warn("EntityManager left open at the end of its scope, closing it.");
+                if (entityManager.getTransaction().isActive()) entityManager.getTransaction().rollback();
+                entityManager.close();
+            }
+        }
+        entityManagers.clear();
+    }
+}
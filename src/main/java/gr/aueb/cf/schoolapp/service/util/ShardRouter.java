@@ -0,0 +1,68 @@
+package gr.aueb.cf.schoolapp.service.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Teachers are spread over the databases listed in SCHOOL7_SHARD_URLS (comma separated JDBC urls) by a hash
+// of their shard key (the vat). Generated ids carry the shard they were created on in their low bits,
+// id = sequenceValue * MAX_SHARDS + shard, so a lookup by id needs no directory.
+// Without SCHOOL7_SHARD_URLS there is a single shard, the primary database, and ids are plain sequence values.
+// Changing the shard list moves keys between shards, so it needs a data migration.
+// Locally several in-memory H2 databases make a sharded store, e.g.
+// SCHOOL7_SHARD_URLS=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1
+public class ShardRouter {
+    public static final int MAX_SHARDS = 64;
+    private static final List<String> shardUrls;
+
+    static {
+        String urls = System.getProperty("SCHOOL7_SHARD_URLS", System.getenv("SCHOOL7_SHARD_URLS"));
+        shardUrls = urls == null || urls.isBlank() ? List.of()
+                : Arrays.stream(urls.split(",")).map(String::trim).filter(url -> !url.isEmpty()).toList();
+        if (shardUrls.size() > MAX_SHARDS) {
+            throw new IllegalStateException("At most " + MAX_SHARDS + " shards are supported, got " + shardUrls.size());
+        }
+    }
+
+    private ShardRouter() {
+    }
+
+    public static int shardCount() {
+        return Math.max(1, shardUrls.size());
+    }
+
+    public static boolean isSharded() {
+        return shardCount() > 1;
+    }
+
+    // The JDBC url of a shard, null for the unsharded primary
+    static String shardUrl(int shard) {
+        return shardUrls.isEmpty() ? null : shardUrls.get(shard);
+    }
+
+    public static int shardForKey(Object key) {
+        return shardForKey(key, shardCount());
+    }
+
+    public static int shardForId(Object id) {
+        return shardForId(id, shardCount());
+    }
+
+    // The routing for a given number of shards, the shard list itself is fixed when the class loads
+    static int shardForKey(Object key, int shardCount) {
+        if (shardCount <= 1) return 0;
+        CRC32 crc = new CRC32();
+        crc.update(key.toString().getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % shardCount);
+    }
+
+    static int shardForId(Object id, int shardCount) {
+        if (shardCount <= 1) return 0;
+        return (int) Math.floorMod(((Number) id).longValue(), (long) MAX_SHARDS);
+    }
+
+    public static long encodeId(long sequenceValue, int shard) {
+        return sequenceValue * MAX_SHARDS + shard;
+    }
+}
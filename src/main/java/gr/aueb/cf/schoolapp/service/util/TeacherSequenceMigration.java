@@ -0,0 +1,58 @@
+package gr.aueb.cf.schoolapp.service.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Teacher ids came from AUTO_INCREMENT before the pooled teachers_seq generator. MySQL has no sequences, so Hibernate
+// keeps the generator in a one-row teachers_seq table that the schema update creates starting at 1, and a database
+// that already holds teachers would be handed ids it has. Runs after the schema update and only ever moves next_val
+// forward, so it is a no-op on a new or already migrated database. Databases with real sequences (the in-memory H2
+// ones) always start empty and are left alone.
+class TeacherSequenceMigration {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TeacherSequenceMigration.class);
+    // The increment of the generator on Teacher.id
+    private static final int ALLOCATION_SIZE = 50;
+
+    private TeacherSequenceMigration() {
+    }
+
+    static void seedPastExistingIds(DataSource dataSource, boolean sharded) {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!hasTable(connection, "teachers_seq") || !hasTable(connection, "teachers")) return;
+            long maxId;
+            try (Statement statement = connection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM teachers")) {
+                result.next();
+                maxId = result.getLong(1);
+            }
+            if (maxId <= 0) return;
+
+            // The pooled optimizer hands out next_val - 49 .. next_val, so the lowest of them has to clear the highest
+            // sequence value in use. Sharded ids carry the sequence value above the shard bits (see ShardRouter).
+            long highestUsed = sharded ? Math.floorDiv(maxId, ShardRouter.MAX_SHARDS) : maxId;
+            long nextVal = highestUsed + ALLOCATION_SIZE;
+            try (PreparedStatement update = connection.prepareStatement("UPDATE teachers_seq SET next_val = ? WHERE next_val < ?")) {
+                update.setLong(1, nextVal);
+                update.setLong(2, nextVal);
+                if (update.executeUpdate() > 0) {
+                    LOGGER.info("teachers_seq moved to {} past the existing teacher ids (max id {}).", nextVal, maxId);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("teachers_seq could not be moved past the existing teacher ids", e);
+        }
+    }
+
+    private static boolean hasTable(Connection connection, String name) throws SQLException {
+        try (ResultSet tables = connection.getMetaData().getTables(connection.getCatalog(), null, name, new String[] {"TABLE"})) {
+            return tables.next();
+        }
+    }
+}
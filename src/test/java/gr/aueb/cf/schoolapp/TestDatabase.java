@@ -0,0 +1,24 @@
+package gr.aueb.cf.schoolapp;
+
+import gr.aueb.cf.schoolapp.service.util.JPAHelper;
+
+// The in-memory H2 shards of the DAO and service tests (SCHOOL7_SHARD_URLS, set by surefire). Tests share the
+// schema and start from empty tables.
+public final class TestDatabase {
+
+    private TestDatabase() {
+    }
+
+    public static void clear() {
+        try {
+            JPAHelper.beginTransaction();
+            JPAHelper.onAllShards(() -> {
+                JPAHelper.getEntityManager().createQuery("DELETE FROM Teacher").executeUpdate();
+                return JPAHelper.getEntityManager().createQuery("DELETE FROM TeacherTombstone").executeUpdate();
+            });
+            JPAHelper.commitTransaction();
+        } finally {
+            JPAHelper.closeEntityManager();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package gr.aueb.cf.schoolapp.core.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    void admitsUpToTheLimitAndReleasesPermits() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 2);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+
+        limit.release(MILLIS);
+        assertEquals(1, limit.getInFlight());
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void shrinksWhenLatencyRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 64);
+        run(limit, 200, MILLIS);
+        assertEquals(64, limit.getLimit());
+
+        run(limit, 20, 50 * MILLIS);
+        assertTrue(limit.getLimit() < 32, "limit " + limit.getLimit());
+    }
+
+    @Test
+    void neverShrinksBelowTheMinimum() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(48, 64);
+        run(limit, 200, MILLIS);
+
+        run(limit, 20, 50 * MILLIS);
+        assertEquals(48, limit.getLimit());
+    }
+
+    @Test
+    void growsBackOnceLatencyIsFlatAgain() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 64);
+        run(limit, 200, MILLIS);
+        run(limit, 20, 50 * MILLIS);
+        int shrunk = limit.getLimit();
+
+        run(limit, 200, MILLIS);
+        assertTrue(limit.getLimit() > shrunk, "limit " + limit.getLimit() + " after " + shrunk);
+    }
+
+    // Keeps the current limit saturated so every release counts as a used limit
+    private static void run(AdaptiveConcurrencyLimit limit, int requests, long latencyNanos) {
+        for (int i = 0; i < requests; i++) {
+            while (limit.tryAcquire()) {
+                // fill up
+            }
+            limit.release(latencyNanos);
+        }
+        while (limit.getInFlight() > 0) limit.release(latencyNanos);
+    }
+}
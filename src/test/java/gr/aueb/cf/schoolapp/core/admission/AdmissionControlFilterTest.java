@@ -0,0 +1,64 @@
+package gr.aueb.cf.schoolapp.core.admission;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlFilterTest {
+    private static final Set<String> PROXIES = Set.of("10.0.0.1", "10.0.0.2");
+
+    @Test
+    void ignoresForwardedForFromAnUntrustedPeer() {
+        assertEquals("203.0.113.7", AdmissionControlFilter.clientKey("203.0.113.7", "198.51.100.1", PROXIES));
+    }
+
+    @Test
+    void takesTheNearestHopNotAddedByATrustedProxy() {
+        assertEquals("198.51.100.1", AdmissionControlFilter.clientKey("10.0.0.1", "198.51.100.1", PROXIES));
+        assertEquals("198.51.100.1", AdmissionControlFilter.clientKey("10.0.0.1", "192.0.2.9, 198.51.100.1, 10.0.0.2", PROXIES));
+    }
+
+    @Test
+    void fallsBackToThePeerWithoutAUsableHop() {
+        assertEquals("10.0.0.1", AdmissionControlFilter.clientKey("10.0.0.1", null, PROXIES));
+        assertEquals("10.0.0.1", AdmissionControlFilter.clientKey("10.0.0.1", " , 10.0.0.2", PROXIES));
+    }
+
+    @Test
+    void unmappedExceptionGivesThePermitBack() {
+        AdmissionControlFilter filter = new AdmissionControlFilter();
+        // More requests than the read limit allows at once: each one would keep its permit if the release were skipped
+        for (int i = 0; i < 80; i++) {
+            ContainerRequest request = new ContainerRequest(URI.create("http://localhost/api/"),
+                    URI.create("http://localhost/api/teachers/" + i), "GET", null, new MapPropertiesDelegate(), null);
+            filter.filter(request);
+            assertNull(request.getAbortResponse());
+            assertTrue(request.getPropertyNames().stream().anyMatch(name -> name.endsWith(".permit")));
+
+            // No exception mapper: Jersey skips the response filters and goes straight to FINISHED
+            RequestEventListener listener = filter.onRequest(event(RequestEvent.Type.START, request));
+            listener.onEvent(event(RequestEvent.Type.ON_EXCEPTION, request));
+            listener.onEvent(event(RequestEvent.Type.FINISHED, request));
+            assertFalse(request.getPropertyNames().stream().anyMatch(name -> name.endsWith(".permit")));
+        }
+    }
+
+    private static RequestEvent event(RequestEvent.Type type, ContainerRequest request) {
+        return (RequestEvent) Proxy.newProxyInstance(RequestEvent.class.getClassLoader(), new Class<?>[] {RequestEvent.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getType" -> type;
+                    case "getContainerRequest" -> request;
+                    case "getException" -> type == RequestEvent.Type.ON_EXCEPTION ? new IllegalStateException("unmapped") : null;
+                    case "isSuccess", "isResponseSuccessfullyMapped", "isResponseWritten" -> false;
+                    default -> null;
+                });
+    }
+}
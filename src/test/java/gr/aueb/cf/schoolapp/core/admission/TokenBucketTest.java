@@ -0,0 +1,47 @@
+package gr.aueb.cf.schoolapp.core.admission;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void allowsABurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(0.001, 3);
+
+        assertEquals(0L, bucket.tryAcquire());
+        assertEquals(0L, bucket.tryAcquire());
+        assertEquals(0L, bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire() > 0);
+    }
+
+    @Test
+    void retryAfterIsTheTimeUntilTheNextToken() {
+        TokenBucket bucket = new TokenBucket(0.1, 1);
+        bucket.tryAcquire();
+
+        long retryAfter = bucket.tryAcquire();
+        assertTrue(retryAfter >= 9 && retryAfter <= 10, "retry after " + retryAfter);
+    }
+
+    @Test
+    void refillsOverTime() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1000, 1);
+        assertEquals(0L, bucket.tryAcquire());
+
+        Thread.sleep(20);
+        assertEquals(0L, bucket.tryAcquire());
+    }
+
+    @Test
+    void isFullOnceEveryTakenTokenIsBack() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1000, 2);
+        assertTrue(bucket.isFull());
+        bucket.tryAcquire();
+        assertFalse(bucket.isFull());
+
+        Thread.sleep(20);
+        assertTrue(bucket.isFull());
+    }
+}
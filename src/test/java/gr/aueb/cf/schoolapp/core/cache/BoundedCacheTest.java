@@ -0,0 +1,84 @@
+package gr.aueb.cf.schoolapp.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedCacheTest {
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryOverMaxSize() {
+        List<String> removed = new ArrayList<>();
+        BoundedCache<Integer, String> cache = new BoundedCache<>("test", 2, Duration.ofMinutes(1), (key, value) -> removed.add(value));
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.get(1);
+        cache.put(3, "three");
+
+        assertEquals(Optional.of("one"), cache.get(1));
+        assertEquals(Optional.empty(), cache.get(2));
+        assertEquals(Optional.of("three"), cache.get(3));
+        assertEquals(List.of("two"), removed);
+        assertEquals(1, cache.stats().evictions());
+    }
+
+    @Test
+    void expiresEntriesAfterTheTtl() {
+        List<String> removed = new ArrayList<>();
+        BoundedCache<Integer, String> cache = new BoundedCache<>("test", 10, Duration.ZERO, (key, value) -> removed.add(value));
+        cache.put(1, "one");
+
+        assertEquals(Optional.empty(), cache.get(1));
+        assertEquals(0, cache.size());
+        assertEquals(List.of("one"), removed);
+    }
+
+    @Test
+    void reportsReplacedAndInvalidatedEntries() {
+        List<String> removed = new ArrayList<>();
+        BoundedCache<Integer, String> cache = new BoundedCache<>("test", 10, Duration.ofMinutes(1), (key, value) -> removed.add(value));
+        cache.put(1, "one");
+        cache.put(1, "uno");
+        cache.put(2, "two");
+        cache.invalidate(1);
+        cache.invalidateAll();
+
+        assertEquals(List.of("one", "uno", "two"), removed);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void putUnlessKeepsTheLiveEntryItIsToldToKeep() {
+        BoundedCache<Integer, Long> cache = new BoundedCache<>("test", 10, Duration.ofMinutes(1));
+        cache.put(1, 5L);
+
+        assertFalse(cache.putUnless(1, 4L, (current, candidate) -> current > candidate));
+        assertEquals(Optional.of(5L), cache.get(1));
+        assertTrue(cache.putUnless(1, 6L, (current, candidate) -> current > candidate));
+        assertEquals(Optional.of(6L), cache.get(1));
+    }
+
+    @Test
+    void putUnlessIgnoresAnExpiredEntry() {
+        BoundedCache<Integer, Long> cache = new BoundedCache<>("test", 10, Duration.ZERO);
+        cache.put(1, 5L);
+
+        assertTrue(cache.putUnless(1, 4L, (current, candidate) -> current > candidate));
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        BoundedCache<Integer, String> cache = new BoundedCache<>("test", 10, Duration.ofMinutes(1));
+        cache.put(1, "one");
+        cache.get(1);
+        cache.get(2);
+
+        assertEquals(1, cache.stats().hits());
+        assertEquals(1, cache.stats().misses());
+    }
+}
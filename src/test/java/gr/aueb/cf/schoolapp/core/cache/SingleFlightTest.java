@@ -0,0 +1,91 @@
+package gr.aueb.cf.schoolapp.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+    private final SingleFlight<String, Integer> flight = new SingleFlight<>("test");
+
+    @Test
+    void concurrentCallsWithTheSameKeyShareOneExecution() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> flight.execute("key", () -> {
+                    executions.incrementAndGet();
+                    release.await();
+                    return 42;
+                })));
+            }
+            // Let every caller reach the flight before the first one finishes
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<Integer> result : results) assertEquals(Integer.valueOf(42), result.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void nothingIsCachedAfterTheCallCompletes() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+
+        flight.execute("key", executions::incrementAndGet);
+        flight.execute("key", executions::incrementAndGet);
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void differentKeysDoNotShareAnExecution() throws Exception {
+        assertEquals(Integer.valueOf(1), flight.execute("a", () -> flight.execute("b", () -> 1)));
+    }
+
+    @Test
+    void failureIsRethrownAndTheKeyIsFreed() throws Exception {
+        assertThrows(IOException.class, () -> flight.execute("key", () -> {
+            throw new IOException("database down");
+        }));
+
+        assertEquals(Integer.valueOf(7), flight.execute("key", () -> 7));
+    }
+
+    @Test
+    void waitersGetTheFailureOfTheSharedCall() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> first = executor.submit(() -> flight.execute("key", () -> {
+                started.countDown();
+                release.await();
+                throw new IllegalStateException("database down");
+            }));
+            started.await();
+            Future<Integer> waiter = executor.submit(() -> flight.execute("key", () -> 1));
+            Thread.sleep(100);
+            release.countDown();
+
+            assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS));
+            Exception e = assertThrows(Exception.class, () -> waiter.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException, "cause " + e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
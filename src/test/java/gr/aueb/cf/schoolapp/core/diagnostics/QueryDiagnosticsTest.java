@@ -0,0 +1,48 @@
+package gr.aueb.cf.schoolapp.core.diagnostics;
+
+import gr.aueb.cf.schoolapp.dto.RouteQueryStatsDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryDiagnosticsTest {
+
+    @Test
+    void statementsOnWrappedWorkersCountTowardsTheRequest() throws Exception {
+        QueryDiagnostics.RequestQueries request = QueryDiagnostics.beginRequest("QueryDiagnosticsTest.scatter");
+        Supplier<Integer> work = QueryDiagnostics.wrap(() -> {
+            QueryDiagnostics.statementPrepared("select 1");
+            QueryDiagnostics.statementExecuted(1_000);
+            return 1;
+        });
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) futures.add(workers.submit(work::get));
+            for (Future<Integer> future : futures) future.get();
+        }
+        QueryDiagnostics.endRequest(request);
+
+        RouteQueryStatsDTO route = QueryDiagnostics.summary().routes().stream()
+                .filter(stats -> stats.route().equals("QueryDiagnosticsTest.scatter")).findFirst().orElseThrow();
+        assertEquals(3L, route.statements());
+    }
+
+    @Test
+    void workersWithoutWrapAreNotCounted() throws Exception {
+        QueryDiagnostics.RequestQueries request = QueryDiagnostics.beginRequest("QueryDiagnosticsTest.unwrapped");
+        Thread worker = Thread.ofVirtual().start(() -> QueryDiagnostics.statementExecuted(1_000));
+        worker.join();
+        QueryDiagnostics.endRequest(request);
+
+        RouteQueryStatsDTO route = QueryDiagnostics.summary().routes().stream()
+                .filter(stats -> stats.route().equals("QueryDiagnosticsTest.unwrapped")).findFirst().orElseThrow();
+        assertEquals(0L, route.statements());
+    }
+}
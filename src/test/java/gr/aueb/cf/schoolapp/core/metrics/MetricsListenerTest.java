@@ -0,0 +1,47 @@
+package gr.aueb.cf.schoolapp.core.metrics;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsListenerTest {
+
+    @Test
+    void recordsARequestEndedByAnUnmappedExceptionAsA500() {
+        String labels = MetricsRegistry.labels("method", "PATCH", "route", "unmatched");
+        LongAdder responses = MetricsRegistry.counter("http_server_responses_total", "Responses per route and status",
+                MetricsRegistry.labels("method", "PATCH", "route", "unmatched", "status", "500"));
+        Histogram latency = MetricsRegistry.histogram("http_server_requests_seconds", "Request latency per route", labels);
+        long responsesBefore = responses.sum();
+        long observedBefore = latency.count();
+
+        ContainerRequest request = new ContainerRequest(URI.create("http://localhost/api/"),
+                URI.create("http://localhost/api/teachers/1"), "PATCH", null, new MapPropertiesDelegate(), null);
+        RequestEventListener listener = new MetricsListener().onRequest(event(RequestEvent.Type.START, request));
+        // No exception mapper: the response filters never run and there is no response, the container answers 500
+        listener.onEvent(event(RequestEvent.Type.ON_EXCEPTION, request));
+        listener.onEvent(event(RequestEvent.Type.FINISHED, request));
+
+        assertEquals(responsesBefore + 1, responses.sum());
+        assertEquals(observedBefore + 1, latency.count());
+    }
+
+    private static RequestEvent event(RequestEvent.Type type, ContainerRequest request) {
+        return (RequestEvent) Proxy.newProxyInstance(RequestEvent.class.getClassLoader(), new Class<?>[] {RequestEvent.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getType" -> type;
+                    case "getContainerRequest" -> request;
+                    case "getException" -> type == RequestEvent.Type.START ? null : new IllegalStateException("unmapped");
+                    case "isSuccess", "isResponseSuccessfullyMapped", "isResponseWritten" -> false;
+                    default -> null;
+                });
+    }
+}
@@ -0,0 +1,67 @@
+package gr.aueb.cf.schoolapp.core.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrigramIndexTest {
+    private final TrigramIndex<Long> index = new TrigramIndex<>(0.7);
+
+    @Test
+    void findsShortPrefixes() {
+        index.put(1L, "Maria", "Papadopoulou");
+        index.put(2L, "Nikos", "Georgiou");
+
+        assertEquals(List.of(1L), index.search("pa", 10));
+        assertEquals(List.of(2L), index.search("geo", 10));
+    }
+
+    @Test
+    void ignoresCaseAndDiacritics() {
+        index.put(1L, "Μαρία", "Παπαδοπούλου");
+
+        assertEquals(List.of(1L), index.search("ΠΑΠΑΔΟΠΟΥΛΟΥ", 10));
+        assertEquals(List.of(1L), index.search("μαρια", 10));
+    }
+
+    @Test
+    void toleratesASmallTypo() {
+        index.put(1L, "Papadopoulos");
+
+        assertEquals(List.of(1L), index.search("papadopolos", 10));
+        assertEquals(List.of(), index.search("georgiou", 10));
+    }
+
+    @Test
+    void ranksBestMatchFirstAndKeepsKeyOrderOnTies() {
+        index.put(3L, "Papas");
+        index.put(2L, "Papadopoulos");
+        index.put(1L, "Papadakis");
+
+        assertEquals(List.of(2L, 1L), index.search("papadop", 10));
+        assertEquals(List.of(1L, 2L), index.search("papad", 2));
+    }
+
+    @Test
+    void putReplacesAndRemoveDropsTheDocument() {
+        index.put(1L, "Papadopoulos");
+        index.put(1L, "Georgiou");
+
+        assertEquals(List.of(), index.search("papadopoulos", 10));
+        assertEquals(List.of(1L), index.search("georgiou", 10));
+
+        index.remove(1L);
+        assertEquals(List.of(), index.search("georgiou", 10));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void blankQueryMatchesNothing() {
+        index.put(1L, "Papadopoulos");
+
+        assertEquals(List.of(), index.search(" - ", 10));
+        assertEquals(List.of(), index.search("papa", 0));
+    }
+}
@@ -0,0 +1,35 @@
+package gr.aueb.cf.schoolapp.core.services;
+
+import gr.aueb.cf.schoolapp.core.exceptions.EntityNotFoundException;
+import gr.aueb.cf.schoolapp.core.exceptions.EntityOutdatedException;
+import gr.aueb.cf.schoolapp.core.exceptions.EntityPreconditionFailedException;
+import gr.aueb.cf.schoolapp.dto.ResponseMessageDTO;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppExceptionMapperTest {
+    private final AppExceptionMapper mapper = new AppExceptionMapper();
+
+    @Test
+    void staleVersionIsAConflict() {
+        Response response = mapper.toResponse(new EntityOutdatedException("Teacher", "outdated"));
+
+        assertEquals(409, response.getStatus());
+        assertEquals("TeacherOutdated", ((ResponseMessageDTO) response.getEntity()).code());
+    }
+
+    @Test
+    void failedIfMatchIsAPreconditionFailure() {
+        Response response = mapper.toResponse(new EntityPreconditionFailedException("Teacher", "If-Match failed"));
+
+        assertEquals(412, response.getStatus());
+        assertEquals("TeacherPreconditionFailed", ((ResponseMessageDTO) response.getEntity()).code());
+    }
+
+    @Test
+    void missingTeacherIsNotFound() {
+        assertEquals(404, mapper.toResponse(new EntityNotFoundException("Teacher", "not found")).getStatus());
+    }
+}
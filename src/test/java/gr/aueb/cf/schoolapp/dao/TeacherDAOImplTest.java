@@ -0,0 +1,181 @@
+package gr.aueb.cf.schoolapp.dao;
+
+import gr.aueb.cf.schoolapp.TestDatabase;
+import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
+import gr.aueb.cf.schoolapp.mapper.Mapper;
+import gr.aueb.cf.schoolapp.model.Teacher;
+import gr.aueb.cf.schoolapp.service.util.JPAHelper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TeacherDAOImplTest {
+    private final TeacherDAOImpl teacherDAO = new TeacherDAOImpl();
+
+    @BeforeEach
+    void clear() {
+        TestDatabase.clear();
+    }
+
+    @Test
+    void keysetPagesAcrossShardsFollowTheDatabaseCollation() {
+        List<String> lastnames = List.of("b", "C", "a", "É", "e", "Émile", "abc", "ábc", "Zeta", "zeta", "Ärzte", "arzt");
+        for (int i = 0; i < lastnames.size(); i++) insert(String.format("%09d", i + 1), "Maria", lastnames.get(i));
+
+        String values = lastnames.stream().map(lastname -> "('" + lastname + "')").collect(Collectors.joining(", "));
+        List<?> expected = read(() -> JPAHelper.getEntityManager()
+                .createNativeQuery("SELECT v FROM (VALUES " + values + ") AS t(v) ORDER BY v").getResultList());
+
+        List<String> paged = new ArrayList<>();
+        Teacher last = null;
+        while (true) {
+            Teacher after = last;
+            List<Teacher> page = read(() -> teacherDAO.getByCriteriaKeyset(Teacher.class, Map.of(), "lastname",
+                    after == null ? null : after.getLastname(), after == null ? null : after.getId(), 5));
+            if (page.isEmpty()) break;
+            page.forEach(teacher -> paged.add(teacher.getLastname()));
+            last = page.get(page.size() - 1);
+        }
+
+        assertEquals(expected, paged);
+    }
+
+    @Test
+    void updateFieldsByIdAndVersionOnlyMatchesTheCurrentVersion() {
+        Teacher teacher = insert("000000001", "Maria", "Papadopoulou");
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+
+        assertEquals(1, (int) write(() -> teacherDAO.updateFieldsByIdAndVersion(teacher.getId(), teacher.getVersion(), Map.of("lastname", "Pappa"), now)));
+        assertEquals(0, (int) write(() -> teacherDAO.updateFieldsByIdAndVersion(teacher.getId(), teacher.getVersion(), Map.of("lastname", "Georgiou"), now)));
+        // Without a version the update is unconditional
+        assertEquals(1, (int) write(() -> teacherDAO.updateFieldsByIdAndVersion(teacher.getId(), null, Map.of("firstname", "Eleni"), now)));
+
+        Teacher stored = read(() -> teacherDAO.getById(teacher.getId())).orElseThrow();
+        assertEquals("Eleni", stored.getFirstname());
+        assertEquals("Pappa", stored.getLastname());
+        assertEquals(Long.valueOf(teacher.getVersion() + 2), stored.getVersion());
+    }
+
+    @Test
+    void deleteByIdAndVersionOnlyMatchesTheCurrentVersion() {
+        Teacher teacher = insert("000000001", "Maria", "Papadopoulou");
+
+        assertEquals(0, (int) write(() -> teacherDAO.deleteByIdAndVersion(teacher.getId(), teacher.getVersion() + 1)));
+        assertEquals(1, (int) write(() -> teacherDAO.deleteByIdAndVersion(teacher.getId(), teacher.getVersion())));
+        assertEquals(0, (int) write(() -> teacherDAO.deleteByIdAndVersion(teacher.getId(), null)));
+        assertTrue(read(() -> teacherDAO.getById(teacher.getId())).isEmpty());
+    }
+
+    @Test
+    void criteriaOfTheSameShapeShareOneCachedJpql() {
+        Map<String, Object> lastnameFirst = new LinkedHashMap<>();
+        lastnameFirst.put("lastname", "Pappa");
+        lastnameFirst.put("firstname", "Maria");
+        Map<String, Object> firstnameFirst = new LinkedHashMap<>();
+        firstnameFirst.put("firstname", "Eleni");
+        firstnameFirst.put("lastname", "Georgiou");
+
+        String jpql = teacherDAO.getCachedQuery("SELECT e", Teacher.class, lastnameFirst, null, "");
+        assertSame(jpql, teacherDAO.getCachedQuery("SELECT e", Teacher.class, firstnameFirst, null, ""));
+        // Another operator on the same keys is another shape
+        assertNotEquals(jpql, teacherDAO.getCachedQuery("SELECT e", Teacher.class, Map.of("lastname", "Pap%", "firstname", "Maria"), null, ""));
+    }
+
+    @Test
+    void criteriaOfTheSameShapeBindTheirOwnValues() {
+        insert("000000001", "Maria", "Pappa");
+        insert("000000002", "Eleni", "Georgiou");
+        insert("000000003", "Nikos", "Papadopoulos");
+
+        assertEquals(List.of("000000001"), vats(read(() -> teacherDAO.getByCriteria(Teacher.class, Map.of("lastname", "Pappa")))));
+        assertEquals(List.of("000000002"), vats(read(() -> teacherDAO.getByCriteria(Teacher.class, Map.of("lastname", "Georgiou")))));
+        assertEquals(List.of("000000001", "000000003"), vats(read(() -> teacherDAO.getByCriteria(Teacher.class, Map.of("lastname", "pap%")))));
+        assertEquals(List.of("000000002", "000000003"), vats(read(() -> teacherDAO.getByCriteria(Teacher.class, Map.of("firstname", List.of("Eleni", "Nikos"))))));
+    }
+
+    @Test
+    void projectionsMatchTheEntitiesAcrossShards() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 1; i <= 7; i++) ids.add(insert(String.format("%09d", i), "Maria", "Lastname" + i).getId());
+        assertTrue(ids.stream().map(id -> id % 64).distinct().count() > 1);
+        List<TeacherReadOnlyDTO> expected = read(() -> Mapper.mapToTeacherReadOnlyDTOs(teacherDAO.getByCriteria(Teacher.class, Map.of())))
+                .stream().sorted(Comparator.comparing(TeacherReadOnlyDTO::id)).toList();
+        assertEquals(ids.stream().sorted().toList(), expected.stream().map(TeacherReadOnlyDTO::id).toList());
+
+        assertEquals(expected.get(4), read(() -> teacherDAO.getProjectionById(TeacherReadOnlyDTO.class,
+                Mapper.TEACHER_READ_ONLY_FIELDS, expected.get(4).id())).orElseThrow());
+        assertEquals(expected.subList(3, 6), read(() -> teacherDAO.getProjectionByCriteriaPaginated(TeacherReadOnlyDTO.class,
+                Mapper.TEACHER_READ_ONLY_FIELDS, Map.of(), 1, 3)));
+        assertEquals(List.of(expected.get(2)), read(() -> teacherDAO.getProjectionByCriteria(TeacherReadOnlyDTO.class,
+                Mapper.TEACHER_READ_ONLY_FIELDS, Map.of("vat", expected.get(2).vat()))));
+        assertTrue(read(() -> teacherDAO.getProjectionById(TeacherReadOnlyDTO.class, Mapper.TEACHER_READ_ONLY_FIELDS, expected.get(6).id() + 64 * 100)).isEmpty());
+    }
+
+    @Test
+    void pagesWithTotalCarryTheCountOfEveryShard() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            Teacher teacher = insert(String.format("%09d", i), "Maria", i % 4 == 0 ? "Georgiou" : "Pappa" + i);
+            if (i % 4 != 0) ids.add(teacher.getId());
+        }
+        ids.sort(Comparator.naturalOrder());
+        List<String> fields = List.of("id", "lastname");
+        Map<String, Object> criteria = Map.of("lastname", "pap%");
+
+        List<Object[]> rows = read(() -> teacherDAO.getFieldsByCriteriaPaginatedWithTotal(fields, criteria, 1, 4));
+        assertEquals(ids.subList(4, 6), rows.stream().map(row -> row[0]).toList());
+        rows.forEach(row -> assertEquals(6L, ((Number) row[2]).longValue()));
+
+        assertEquals(ids.subList(0, 4), read(() -> teacherDAO.getFieldsByCriteriaPaginatedWithTotal(fields, criteria, 0, 4))
+                .stream().map(row -> row[0]).toList());
+        assertTrue(read(() -> teacherDAO.getFieldsByCriteriaPaginatedWithTotal(fields, criteria, 2, 4)).isEmpty());
+    }
+
+    private Teacher insert(String vat, String firstname, String lastname) {
+        try {
+            JPAHelper.beginTransaction();
+            Teacher teacher = teacherDAO.insert(Teacher.builder().vat(vat).firstname(firstname).lastname(lastname).build()).orElseThrow();
+            JPAHelper.commitTransaction();
+            return teacher;
+        } finally {
+            JPAHelper.closeEntityManager();
+        }
+    }
+
+    private static List<String> vats(List<Teacher> teachers) {
+        return teachers.stream().map(Teacher::getVat).sorted().toList();
+    }
+
+    private static <R> R write(Supplier<R> statement) {
+        try {
+            JPAHelper.beginTransaction();
+            R result = statement.get();
+            JPAHelper.commitTransaction();
+            return result;
+        } finally {
+            JPAHelper.closeEntityManager();
+        }
+    }
+
+    private static <R> R read(Supplier<R> query) {
+        try {
+            JPAHelper.beginReadOnlyTransaction();
+            R result = query.get();
+            JPAHelper.commitTransaction();
+            return result;
+        } finally {
+            JPAHelper.closeEntityManager();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package gr.aueb.cf.schoolapp.service;
+
+import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TeacherCacheTest {
+    private final TeacherCache cache = new TeacherCache();
+
+    @Test
+    void readerDoesNotCacheARowLoadedBeforeAnUpdate() {
+        long generation = cache.rowsGeneration();
+        cache.put(teacher(1L, "Pappa", 2L), cache.rowsGeneration());
+        cache.putIfCurrent(teacher(1L, "Papadopoulos", 1L), generation);
+
+        assertEquals(Optional.of(teacher(1L, "Pappa", 2L)), cache.getById(1L));
+    }
+
+    @Test
+    void readerDoesNotCacheARowLoadedBeforeADelete() {
+        long generation = cache.rowsGeneration();
+        cache.evict(1L);
+        cache.putIfCurrent(teacher(1L, "Papadopoulos", 1L), generation);
+
+        assertEquals(Optional.empty(), cache.getById(1L));
+        assertEquals(Optional.empty(), cache.getByVat("000000001"));
+    }
+
+    @Test
+    void readerCachesWhenNoWriteIntervened() {
+        cache.putIfCurrent(teacher(1L, "Papadopoulos", 1L), cache.rowsGeneration());
+
+        assertEquals(Optional.of(teacher(1L, "Papadopoulos", 1L)), cache.getById(1L));
+        assertEquals(Optional.of(teacher(1L, "Papadopoulos", 1L)), cache.getByVat("000000001"));
+    }
+
+    @Test
+    void olderVersionNeverReplacesANewerOne() {
+        cache.put(teacher(1L, "Pappa", 3L), cache.rowsGeneration());
+        cache.put(teacher(1L, "Papadopoulos", 2L), cache.rowsGeneration());
+
+        assertEquals(Optional.of(teacher(1L, "Pappa", 3L)), cache.getById(1L));
+    }
+
+    @Test
+    void writerDoesNotRecreateARowDeletedAfterItsWrite() {
+        long generation = cache.rowsGeneration();
+        cache.evict(1L);
+        cache.put(teacher(1L, "Pappa", 2L), generation);
+
+        assertEquals(Optional.empty(), cache.getById(1L));
+        assertEquals(Optional.empty(), cache.getByVat("000000001"));
+    }
+
+    @Test
+    void writerDropsTheRowWhenAnotherWriteIntervened() {
+        cache.putIfCurrent(teacher(1L, "Papadopoulos", 1L), cache.rowsGeneration());
+        long generation = cache.rowsGeneration();
+        cache.put(teacher(2L, "Pappa", 1L), cache.rowsGeneration());
+        cache.put(teacher(1L, "Papadopoulou", 2L), generation);
+
+        assertEquals(Optional.empty(), cache.getById(1L));
+    }
+
+    private static TeacherReadOnlyDTO teacher(Long id, String lastname, Long version) {
+        return new TeacherReadOnlyDTO(id, "Maria", lastname, "000000001", version, null);
+    }
+}
@@ -0,0 +1,46 @@
+package gr.aueb.cf.schoolapp.service;
+
+import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TeacherSearchIndexTest {
+    private final TeacherSearchIndex searchIndex = new TeacherSearchIndex();
+
+    @Test
+    void rebuildReplaysWritesMadeWhileTheSnapshotWasRead() {
+        int size = searchIndex.rebuild(() -> {
+            // The snapshot was read before these writes committed
+            searchIndex.put(teacher(1L, "Georgiou"));
+            searchIndex.remove(2L);
+            searchIndex.put(teacher(3L, "Nikolaou"));
+            return List.of(teacher(1L, "Papadopoulos"), teacher(2L, "Papadakis"));
+        });
+
+        assertEquals(2, size);
+        assertTrue(searchIndex.isReady());
+        assertEquals(List.of(1L), searchIndex.search("georgiou", 10));
+        assertEquals(List.of(), searchIndex.search("papad", 10));
+        assertEquals(List.of(3L), searchIndex.search("nikolaou", 10));
+    }
+
+    @Test
+    void failedRebuildStopsRecordingWrites() {
+        assertThrows(IllegalStateException.class, () -> searchIndex.rebuild(() -> {
+            throw new IllegalStateException("database down");
+        }));
+        assertFalse(searchIndex.isReady());
+
+        searchIndex.put(teacher(1L, "Georgiou"));
+        searchIndex.rebuild(List::of);
+
+        assertEquals(List.of(), searchIndex.search("georgiou", 10));
+    }
+
+    private static TeacherReadOnlyDTO teacher(Long id, String lastname) {
+        return new TeacherReadOnlyDTO(id, "Maria", lastname, "00000000" + id, 1L, null);
+    }
+}
@@ -0,0 +1,147 @@
+package gr.aueb.cf.schoolapp.service;
+
+import gr.aueb.cf.schoolapp.TestDatabase;
+import gr.aueb.cf.schoolapp.core.exceptions.EntityInvalidArgumentException;
+import gr.aueb.cf.schoolapp.core.exceptions.EntityNotFoundException;
+import gr.aueb.cf.schoolapp.core.exceptions.EntityOutdatedException;
+import gr.aueb.cf.schoolapp.dao.TeacherDAOImpl;
+import gr.aueb.cf.schoolapp.dao.TeacherTombstoneDAOImpl;
+import gr.aueb.cf.schoolapp.dto.ChangeType;
+import gr.aueb.cf.schoolapp.dto.PaginatedResult;
+import gr.aueb.cf.schoolapp.dto.TeacherChangeDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherChangesDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherInsertDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherPatchDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherReadOnlyDTO;
+import gr.aueb.cf.schoolapp.dto.TeacherUpdateDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TeacherServiceImplTest {
+    private final TeacherServiceImpl teacherService = new TeacherServiceImpl(new TeacherDAOImpl(), new TeacherCache(),
+            new TeacherSearchIndex(), new TeacherTombstoneDAOImpl(), new TeacherChangeBroadcaster());
+
+    @BeforeEach
+    void clear() {
+        TestDatabase.clear();
+    }
+
+    @Test
+    void updateWithTheCurrentVersionBumpsIt() throws Exception {
+        TeacherReadOnlyDTO teacher = teacherService.insertTeacher(new TeacherInsertDTO("Maria", "Papadopoulou", "000000001"));
+
+        TeacherReadOnlyDTO updated = teacherService.updateTeacher(
+                new TeacherUpdateDTO(teacher.id(), "Maria", "Pappa", teacher.vat(), teacher.version()));
+
+        assertEquals(Long.valueOf(teacher.version() + 1), updated.version());
+        assertEquals("Pappa", teacherService.getTeacherById(teacher.id()).lastname());
+    }
+
+    @Test
+    void updateWithAStaleVersionIsOutdated() throws Exception {
+        TeacherReadOnlyDTO teacher = teacherService.insertTeacher(new TeacherInsertDTO("Maria", "Papadopoulou", "000000001"));
+        teacherService.updateTeacher(new TeacherUpdateDTO(teacher.id(), "Maria", "Pappa", teacher.vat(), teacher.version()));
+
+        EntityOutdatedException e = assertThrows(EntityOutdatedException.class, () -> teacherService.updateTeacher(
+                new TeacherUpdateDTO(teacher.id(), "Maria", "Georgiou", teacher.vat(), teacher.version())));
+        assertEquals("TeacherOutdated", e.getCode());
+        assertEquals("Pappa", teacherService.getTeacherById(teacher.id()).lastname());
+    }
+
+    @Test
+    void patchWithAStaleVersionIsOutdated() throws Exception {
+        TeacherReadOnlyDTO teacher = teacherService.insertTeacher(new TeacherInsertDTO("Maria", "Papadopoulou", "000000001"));
+        teacherService.patchTeacher(teacher.id(), new TeacherPatchDTO(null, "Pappa", null, teacher.version()));
+
+        assertThrows(EntityOutdatedException.class,
+                () -> teacherService.patchTeacher(teacher.id(), new TeacherPatchDTO(null, "Georgiou", null, teacher.version())));
+    }
+
+    @Test
+    void updateOfAMissingTeacherIsNotFound() throws Exception {
+        TeacherReadOnlyDTO teacher = teacherService.insertTeacher(new TeacherInsertDTO("Maria", "Papadopoulou", "000000001"));
+        teacherService.deleteTeacher(teacher.id(), teacher.version());
+
+        assertThrows(EntityNotFoundException.class, () -> teacherService.updateTeacher(
+                new TeacherUpdateDTO(teacher.id(), "Maria", "Pappa", teacher.vat(), teacher.version())));
+    }
+
+    @Test
+    void deleteWithAStaleVersionIsOutdatedAndKeepsTheRow() throws Exception {
+        TeacherReadOnlyDTO teacher = teacherService.insertTeacher(new TeacherInsertDTO("Maria", "Papadopoulou", "000000001"));
+        TeacherReadOnlyDTO updated = teacherService.updateTeacher(
+                new TeacherUpdateDTO(teacher.id(), "Maria", "Pappa", teacher.vat(), teacher.version()));
+
+        assertThrows(EntityOutdatedException.class, () -> teacherService.deleteTeacher(teacher.id(), teacher.version()));
+        assertEquals(updated, teacherService.getTeacherById(teacher.id()));
+
+        assertEquals(updated, teacherService.deleteTeacher(teacher.id(), updated.version()));
+        assertThrows(EntityNotFoundException.class, () -> teacherService.getTeacherById(teacher.id()));
+    }
+
+    @Test
+    void deleteOfAMissingTeacherIsNotFound() {
+        assertThrows(EntityNotFoundException.class, () -> teacherService.deleteTeacher(64L * 1000, null));
+    }
+
+    @Test
+    void pagesReportTheTotalOfEveryShard() throws Exception {
+        List<TeacherReadOnlyDTO> teachers = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) teachers.add(teacherService.insertTeacher(new TeacherInsertDTO("Maria", "Pappa" + i, String.format("%09d", i))));
+        teachers.sort(Comparator.comparing(TeacherReadOnlyDTO::id));
+
+        PaginatedResult<TeacherReadOnlyDTO> page = teacherService.getTeachersPage(Map.of(), 1, 2);
+        assertEquals(5L, page.totalItems());
+        assertEquals(3, page.totalPages());
+        assertEquals(teachers.subList(2, 4).stream().map(TeacherReadOnlyDTO::id).toList(), page.data().stream().map(TeacherReadOnlyDTO::id).toList());
+
+        // Past the end no row carries the window count
+        PaginatedResult<TeacherReadOnlyDTO> pastTheEnd = teacherService.getTeachersPage(Map.of("lastname", "pappa%"), 5, 2);
+        assertTrue(pastTheEnd.data().isEmpty());
+        assertEquals(5L, pastTheEnd.totalItems());
+    }
+
+    @Test
+    void changesAreReportedInOrderAndResumeAfterTheirToken() throws Exception {
+        TeacherReadOnlyDTO maria = teacherService.insertTeacher(new TeacherInsertDTO("Maria", "Papadopoulou", "000000001"));
+        TeacherReadOnlyDTO eleni = teacherService.insertTeacher(new TeacherInsertDTO("Eleni", "Georgiou", "000000002"));
+        Thread.sleep(5);
+        TeacherReadOnlyDTO nikos = teacherService.insertTeacher(new TeacherInsertDTO("Nikos", "Pappas", "000000003"));
+        Thread.sleep(5);
+        teacherService.updateTeacher(new TeacherUpdateDTO(maria.id(), "Maria", "Pappa", maria.vat(), maria.version()));
+        Thread.sleep(5);
+        teacherService.deleteTeacher(eleni.id(), eleni.version());
+        // Changes are only reported once they have settled
+        Thread.sleep(1100);
+
+        TeacherChangesDTO all = teacherService.getTeacherChanges(null, 10);
+        assertEquals(List.of(ChangeType.INSERT, ChangeType.UPDATE, ChangeType.DELETE), all.changes().stream().map(TeacherChangeDTO::type).toList());
+        assertEquals(List.of(nikos.id(), maria.id(), eleni.id()), all.changes().stream().map(TeacherChangeDTO::id).toList());
+        assertEquals("Pappa", all.changes().get(1).teacher().lastname());
+        assertNull(all.changes().get(2).teacher());
+        assertFalse(all.hasMore());
+
+        List<Long> resumed = new ArrayList<>();
+        String token = null;
+        TeacherChangesDTO page;
+        do {
+            page = teacherService.getTeacherChanges(token, 1);
+            page.changes().forEach(change -> resumed.add(change.id()));
+            token = page.nextToken();
+        } while (page.hasMore());
+        assertEquals(List.of(nikos.id(), maria.id(), eleni.id()), resumed);
+        assertEquals(all.nextToken(), token);
+
+        TeacherChangesDTO caughtUp = teacherService.getTeacherChanges(token, 10);
+        assertTrue(caughtUp.changes().isEmpty());
+        assertEquals(token, caughtUp.nextToken());
+        assertThrows(EntityInvalidArgumentException.class, () -> teacherService.getTeacherChanges("not a token", 10));
+    }
+}
@@ -0,0 +1,43 @@
+package gr.aueb.cf.schoolapp.service.util;
+
+import gr.aueb.cf.schoolapp.service.util.CursorUtil.KeysetCursor;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorUtilTest {
+
+    @Test
+    void roundTripsSortValueAndId() {
+        String cursor = CursorUtil.encode("Papadopoulos", 42L);
+        assertEquals(Optional.of(new KeysetCursor("Papadopoulos", 42L)), CursorUtil.decode(cursor));
+    }
+
+    @Test
+    void keepsSeparatorsInsideTheSortValue() {
+        String cursor = CursorUtil.encode("a:b:c", 7L);
+        assertEquals(Optional.of(new KeysetCursor("a:b:c", 7L)), CursorUtil.decode(cursor));
+    }
+
+    @Test
+    void nullSortValueStaysASeekPosition() {
+        assertEquals(Optional.of(new KeysetCursor(null, 9L)), CursorUtil.decode(CursorUtil.encode(null, 9L)));
+    }
+
+    @Test
+    void emptySortValueIsNotNull() {
+        assertEquals(Optional.of(new KeysetCursor("", 9L)), CursorUtil.decode(CursorUtil.encode("", 9L)));
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertTrue(CursorUtil.decode("not base64 !").isEmpty());
+        assertTrue(CursorUtil.decode(Base64.getUrlEncoder().encodeToString(":x".getBytes(StandardCharsets.UTF_8))).isEmpty());
+        assertTrue(CursorUtil.decode(Base64.getUrlEncoder().encodeToString("abc:x".getBytes(StandardCharsets.UTF_8))).isEmpty());
+        assertTrue(CursorUtil.decode(Base64.getUrlEncoder().encodeToString("abc".getBytes(StandardCharsets.UTF_8))).isEmpty());
+    }
+}
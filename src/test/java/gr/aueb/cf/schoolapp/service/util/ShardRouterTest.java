@@ -0,0 +1,43 @@
+package gr.aueb.cf.schoolapp.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRouterTest {
+
+    @Test
+    void encodedIdsRouteBackToTheirShard() {
+        for (int shard = 0; shard < 4; shard++) {
+            long id = ShardRouter.encodeId(1234, shard);
+            assertEquals(shard, ShardRouter.shardForId(id, 4));
+            assertEquals(1234L, Math.floorDiv(id, ShardRouter.MAX_SHARDS));
+        }
+    }
+
+    @Test
+    void encodedIdsStayUniqueAcrossShards() {
+        assertNotEquals(ShardRouter.encodeId(7, 0), ShardRouter.encodeId(7, 1));
+        assertNotEquals(ShardRouter.encodeId(7, 1), ShardRouter.encodeId(8, 0));
+        assertTrue(ShardRouter.encodeId(8, 0) > ShardRouter.encodeId(7, ShardRouter.MAX_SHARDS - 1));
+    }
+
+    @Test
+    void keysAreRoutedStablyAndSpreadOverEveryShard() {
+        int[] perShard = new int[4];
+        for (int i = 0; i < 4000; i++) {
+            String vat = String.format("%09d", i);
+            int shard = ShardRouter.shardForKey(vat, 4);
+            assertEquals(shard, ShardRouter.shardForKey(vat, 4));
+            perShard[shard]++;
+        }
+        for (int count : perShard) assertTrue(count > 800 && count < 1200, "shard got " + count + " of 4000 keys");
+    }
+
+    @Test
+    void everythingIsOnShardZeroWhenUnsharded() {
+        assertEquals(0, ShardRouter.shardForKey("123456789", 1));
+        assertEquals(0, ShardRouter.shardForId(ShardRouter.encodeId(5, 3), 1));
+        assertEquals(0, ShardRouter.shardForId(42L, 1));
+    }
+}